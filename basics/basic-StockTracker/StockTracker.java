@@ -1,32 +1,376 @@
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.text.SimpleDateFormat;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.json.JSONObject;
 import org.json.JSONArray;
 
+// Fixed-capacity price history of one symbol: parallel price and timestamp arrays used as a ring,
+// so recording a tick overwrites the oldest slot in place instead of boxing and shifting. Written
+// by the fetcher and read by the menu; every access is a short synchronized section.
+class PriceRing {
+    private final double[] prices;
+    private final long[] times;
+    private int next; // Slot the next tick goes into
+    private int size;
+
+    PriceRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        prices = new double[capacity];
+        times = new long[capacity];
+    }
+
+    synchronized void add(double price, long timeMillis) {
+        prices[next] = price;
+        times[next] = timeMillis;
+        next = next + 1 == prices.length ? 0 : next + 1;
+        if (size < prices.length) {
+            size++;
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Constant time at any depth; both throw when no tick has been recorded yet
+    synchronized double latest() {
+        return prices[slot(0)];
+    }
+
+    synchronized double oldest() {
+        return prices[slot(size - 1)];
+    }
+
+    // Copies up to n of the latest ticks into the arrays, oldest first, and returns how many.
+    // One consistent snapshot however many ticks arrive meanwhile.
+    synchronized int window(int n, double[] windowPrices, long[] windowTimes) {
+        int count = Math.min(n, size);
+        if (count <= 0) {
+            return 0;
+        }
+        int from = slot(count - 1);
+        for (int i = 0; i < count; i++) {
+            windowPrices[i] = prices[from];
+            windowTimes[i] = times[from];
+            from = from + 1 == prices.length ? 0 : from + 1;
+        }
+        return count;
+    }
+
+    // ago = 0 is the latest tick, size - 1 the oldest still kept
+    private int slot(int ago) {
+        if (ago < 0 || ago >= size) {
+            throw new IndexOutOfBoundsException("No tick " + ago + " back, " + size + " kept");
+        }
+        int slot = next - 1 - ago;
+        return slot < 0 ? slot + prices.length : slot;
+    }
+}
+
+// Pull parser for marketstack eod responses. Reads the body straight off the stream and hands each
+// row's symbol and close to the sink as soon as the row ends, skipping every other field without
+// materializing it, so no response text or JSON tree is ever held in memory.
+class QuoteStreamParser {
+    interface Sink {
+        void quote(String symbol, double close);
+    }
+
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos;
+    private int limit;
+    // Reused for keys and numbers
+    private final StringBuilder text = new StringBuilder();
+
+    QuoteStreamParser(InputStream in) {
+        this.in = new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    // Returns the number of quotes delivered. Rows without a symbol or with a null close are skipped.
+    int parse(Sink sink) throws IOException {
+        int quotes = -1;
+        expect('{');
+        if (next() == '}') {
+            pos++;
+        } else {
+            do {
+                readString(text);
+                expect(':');
+                if (quotes < 0 && "data".contentEquals(text)) {
+                    quotes = parseData(sink);
+                } else {
+                    skipValue();
+                }
+            } while (endOfMember('}'));
+        }
+        if (quotes < 0) {
+            throw new IOException("No data in response");
+        }
+        return quotes;
+    }
+
+    private int parseData(Sink sink) throws IOException {
+        int quotes = 0;
+        expect('[');
+        if (next() == ']') {
+            pos++;
+            return 0;
+        }
+        do {
+            if (parseQuote(sink)) {
+                quotes++;
+            }
+        } while (endOfMember(']'));
+        return quotes;
+    }
+
+    private boolean parseQuote(Sink sink) throws IOException {
+        String symbol = null;
+        double close = Double.NaN;
+        expect('{');
+        if (next() == '}') {
+            pos++;
+            return false;
+        }
+        do {
+            readString(text);
+            expect(':');
+            if ("symbol".contentEquals(text) && next() == '"') {
+                readString(text);
+                symbol = text.toString();
+            } else if ("close".contentEquals(text) && next() != 'n') {
+                close = readNumber();
+            } else {
+                skipValue();
+            }
+        } while (endOfMember('}'));
+        if (symbol == null || Double.isNaN(close)) {
+            return false;
+        }
+        sink.quote(symbol, close);
+        return true;
+    }
+
+    // Consumes the separator after an object member or array element; false once the container closes
+    private boolean endOfMember(char close) throws IOException {
+        int c = next();
+        pos++;
+        if (c == ',') {
+            return true;
+        }
+        if (c != close) {
+            throw unexpected(c, close);
+        }
+        return false;
+    }
+
+    private void skipValue() throws IOException {
+        int c = next();
+        if (c == '"') {
+            skipString();
+            return;
+        }
+        if (c != '{' && c != '[') {
+            // Number or literal
+            while ((c = peek()) >= 0 && ",}] \t\r\n".indexOf(c) < 0) {
+                pos++;
+            }
+            return;
+        }
+        int depth = 0;
+        do {
+            c = peek();
+            if (c < 0) {
+                throw unexpected(c, '}');
+            }
+            if (c == '"') {
+                skipString();
+                continue;
+            }
+            pos++;
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private double readNumber() throws IOException {
+        text.setLength(0);
+        int c;
+        while ((c = peek()) >= 0 && "+-.0123456789eE".indexOf(c) >= 0) {
+            text.append((char) c);
+            pos++;
+        }
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad number '" + text + "'");
+        }
+    }
+
+    private void readString(StringBuilder sb) throws IOException {
+        sb.setLength(0);
+        expect('"');
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                int escaped = read();
+                switch (escaped) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw new IOException("Bad unicode escape");
+                            }
+                            code = code << 4 | digit;
+                        }
+                        sb.append((char) code);
+                    }
+                    default -> sb.append((char) escaped);
+                }
+            } else {
+                sb.append((char) c);
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                read();
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = next();
+        if (c != expected) {
+            throw unexpected(c, expected);
+        }
+        pos++;
+    }
+
+    // Next non-whitespace character, not consumed
+    private int next() throws IOException {
+        int c;
+        while ((c = peek()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            pos++;
+        }
+        return c;
+    }
+
+    // Fails at end of input, which inside a string means the response was cut off
+    private int read() throws IOException {
+        int c = peek();
+        if (c < 0) {
+            throw new IOException("Unexpected end of response");
+        }
+        pos++;
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit) {
+            limit = Math.max(0, in.read(buf, 0, buf.length));
+            pos = 0;
+            if (limit == 0) {
+                return -1;
+            }
+        }
+        return buf[pos];
+    }
+
+    private static IOException unexpected(int found, char expected) {
+        return new IOException(found < 0 ? "Unexpected end of response, expected '" + expected + "'"
+            : "Expected '" + expected + "' but found '" + (char) found + "'");
+    }
+}
+
 public class StockTracker {
     private static final String API_KEY = "80ca4805ba6079fhtpw6c8261fec2d0a"; // Example API. THIS API KEY IS NOT WORKING
     private static final String API_URL = "http://api.marketstack.com/v1/eod?access_key=" + API_KEY + "&symbols=";
     private static final String STOCK_FILE = "stocks.txt";
-    private static List<String> trackedStocks = new ArrayList<>();
-    private static Map<String, List<Double>> priceHistory = new HashMap<>();
-    private static Map<String, Double> alerts = new HashMap<>(); // Stock -> Alert Price
+    // Ticks kept per symbol, overridable with PRICE_HISTORY_DEPTH; the menu shows the latest few
+    private static final int HISTORY_DEPTH = historyDepth();
+    private static final int DISPLAY_DEPTH = 10;
+    // Symbols are fetched in batches of this many per request (marketstack's per-request cap),
+    // with at most MAX_IN_FLIGHT requests outstanding at once
+    private static final int SYMBOLS_PER_REQUEST = 100;
+    private static final int MAX_IN_FLIGHT = 8;
+    // Applies to the response headers and, separately, to reading the body
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(30);
+    // Shared by the menu thread and the fetcher, so all three are concurrent collections.
+    // A symbol has a history entry from the moment it is tracked until it is removed.
+    private static final Set<String> trackedStocks = new ConcurrentSkipListSet<>();
+    private static final Map<String, PriceRing> priceHistory = new ConcurrentHashMap<>();
+    private static final Map<String, Double> alerts = new ConcurrentHashMap<>(); // Stock -> Alert Price
+    private static final HttpClient client = HttpClient.newBuilder()
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    // Batches waiting for one of the MAX_IN_FLIGHT request slots. A batch that finishes hands its slot
+    // straight to the next one, so no thread ever waits for a slot.
+    private static final Queue<Runnable> waitingBatches = new ArrayDeque<>();
+    private static int batchesInFlight; // Guarded by waitingBatches
+    // Reads and parses the response bodies, which block on the socket; one thread per request slot
+    private static final ExecutorService parser = Executors.newFixedThreadPool(MAX_IN_FLIGHT, r -> {
+        Thread t = new Thread(r, "quote-parser");
+        t.setDaemon(true);
+        return t;
+    });
+    // Times the refresh rounds; fetching itself never blocks it
+    private static final ScheduledExecutorService fetcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "price-fetcher");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final long REFRESH_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (HISTORY_DEPTH < 1) {
+            System.out.println("PRICE_HISTORY_DEPTH must be a whole number of at least 1.");
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--bench")) {
+            runBenchmark(args.length > 1 ? Integer.parseInt(args[1]) : 1000, args.length > 2 ? Integer.parseInt(args[2]) : 200);
+            return;
+        }
         loadStocksFromFile();
         Scanner scanner = new Scanner(System.in);
 
-        // Start a timer to fetch prices every 5 minutes (300,000 ms)
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                fetchAndUpdatePrices();
-                checkAlerts();
-            }
-        }, 0, 300000);
+        // Fetch prices every 5 minutes; a round finishes before the next one starts
+        fetcher.execute(StockTracker::refreshRound);
 
         // Main loop for user interaction
         while (true) {
@@ -63,7 +407,7 @@ public class StockTracker {
                     break;
                 case 5:
                     saveStocksToFile();
-                    timer.cancel();
+                    fetcher.shutdownNow();
                     System.out.println("Exiting...");
                     System.exit(0);
                 default:
@@ -72,45 +416,208 @@ public class StockTracker {
         }
     }
 
-    // Fetch stock prices via API
-    private static void fetchAndUpdatePrices() {
-        if (trackedStocks.isEmpty()) return;
-
-        String symbols = String.join(",", trackedStocks);
+    // 0 for a value that is not a number, so main reports it along with values below 1
+    private static int historyDepth() {
+        String depth = System.getenv("PRICE_HISTORY_DEPTH");
+        if (depth == null) {
+            return 1000;
+        }
         try {
-            URL url = new URL(API_URL + symbols);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
+            return Integer.parseInt(depth.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
-            BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+    // Schedules the next round once this one has finished, 5 minutes after this one started
+    private static void refreshRound() {
+        long started = System.nanoTime();
+        fetchAndUpdatePrices(trackedStocks)
+            .thenRun(StockTracker::checkAlerts)
+            .whenComplete((ignored, error) -> fetcher.schedule(StockTracker::refreshRound,
+                Math.max(0, started + REFRESH_INTERVAL_NANOS - System.nanoTime()), TimeUnit.NANOSECONDS));
+    }
+
+    // Fetch stock prices via API. The symbols are split into batches that are requested
+    // concurrently; the future completes once every batch has been applied or has failed.
+    private static CompletableFuture<Void> fetchAndUpdatePrices(Collection<String> symbols) {
+        List<String> batch = new ArrayList<>(SYMBOLS_PER_REQUEST);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        AtomicInteger updated = new AtomicInteger();
+        for (String symbol : symbols) {
+            batch.add(URLEncoder.encode(symbol, StandardCharsets.UTF_8));
+            if (batch.size() == SYMBOLS_PER_REQUEST) {
+                batches.add(fetchBatch(String.join(",", batch), updated));
+                batch.clear();
             }
-            reader.close();
+        }
+        if (!batch.isEmpty()) {
+            batches.add(fetchBatch(String.join(",", batch), updated));
+        }
+        if (batches.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture<?>[]::new))
+            .thenRun(() -> System.out.println("Updated " + updated.get() + " prices at "
+                + LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss"))));
+    }
 
-            JSONObject json = new JSONObject(response.toString());
-            JSONArray data = json.getJSONArray("data");
+    // Queues the batch for a request slot and returns at once; the future completes when the
+    // response has been parsed or the request has failed
+    private static CompletableFuture<Void> fetchBatch(String symbols, AtomicInteger updated) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        startWhenSlotFree(() -> sendBatch(symbols, updated).whenComplete((ignored, error) -> {
+            passSlotOn();
+            done.complete(null);
+        }));
+        return done;
+    }
+
+    private static void startWhenSlotFree(Runnable batch) {
+        synchronized (waitingBatches) {
+            if (batchesInFlight == MAX_IN_FLIGHT) {
+                waitingBatches.add(batch);
+                return;
+            }
+            batchesInFlight++;
+        }
+        batch.run();
+    }
 
-            for (int i = 0; i < data.length(); i++) {
-                JSONObject stock = data.getJSONObject(i);
-                String symbol = stock.getString("symbol");
-                double price = stock.getDouble("close");
+    // Called as a batch finishes: its slot goes to the next waiting batch, or is freed
+    private static void passSlotOn() {
+        Runnable next;
+        synchronized (waitingBatches) {
+            next = waitingBatches.poll();
+            if (next == null) {
+                batchesInFlight--;
+                return;
+            }
+        }
+        next.run();
+    }
 
-                // Update price history
-                priceHistory.computeIfAbsent(symbol, k -> new ArrayList<>()).add(price);
-                if (priceHistory.get(symbol).size() > 10) { // Limit history to 10 entries
-                    priceHistory.get(symbol).remove(0);
+    private static CompletableFuture<Void> sendBatch(String symbols, AtomicInteger updated) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(API_URL + symbols))
+            .timeout(FETCH_TIMEOUT)
+            .GET()
+            .build();
+        // The body is parsed as it arrives, on the parser pool; the slot is held until it has been read
+        // to the end. The request timeout stops at the headers, so a body that stalls is cut off by closing it.
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+            .thenAcceptAsync(response -> {
+                InputStream body = response.body();
+                AtomicBoolean expired = new AtomicBoolean();
+                CompletableFuture<Void> deadline = CompletableFuture.runAsync(() -> {
+                    expired.set(true);
+                    try {
+                        body.close();
+                    } catch (IOException ignored) {
+                    }
+                }, CompletableFuture.delayedExecutor(FETCH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+                try (body) {
+                    if (response.statusCode() != 200) {
+                        throw new IOException("HTTP " + response.statusCode());
+                    }
+                    long now = System.currentTimeMillis();
+                    new QuoteStreamParser(body).parse((symbol, close) -> {
+                        if (recordPrice(symbol, close, now)) {
+                            updated.incrementAndGet();
+                        }
+                    });
+                } catch (IOException e) {
+                    throw new CompletionException(expired.get()
+                        ? new IOException("Response not read within " + FETCH_TIMEOUT.toSeconds() + "s") : e);
+                } finally {
+                    deadline.cancel(false);
                 }
+            }, parser)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                System.out.println("Error fetching stock prices: " + cause.getMessage());
+                return null;
+            });
+    }
+
+    // --bench [symbols] [rounds]: feeds one synthetic eod response of the given size into the
+    // price store through the old JSONObject path and through QuoteStreamParser, and reports
+    // time and allocation per response for each
+    private static void runBenchmark(int symbols, int rounds) throws IOException {
+        byte[] payload = samplePayload(symbols);
+        for (int i = 0; i < symbols; i++) {
+            priceHistory.put("SYM" + i, new PriceRing(HISTORY_DEPTH));
+        }
+        System.out.printf("Response: %d quotes, %.1f KB%n", symbols, payload.length / 1024.0);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (boolean streaming : new boolean[] {false, true}) {
+            for (int i = 0; i < Math.max(1, rounds / 5); i++) {
+                parseSample(payload, streaming); // Warm-up
+            }
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            int quotes = 0;
+            for (int i = 0; i < rounds; i++) {
+                quotes += parseSample(payload, streaming);
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            System.out.printf("%-11s %8.3f ms/response %10.1f KB allocated/response (%d quotes)%n",
+                streaming ? "Streaming:" : "JSONObject:", elapsed / 1e6 / rounds, allocated / 1024.0 / rounds, quotes / rounds);
+        }
+    }
+
+    private static int parseSample(byte[] payload, boolean streaming) throws IOException {
+        long now = System.currentTimeMillis();
+        InputStream body = new ByteArrayInputStream(payload);
+        if (streaming) {
+            return new QuoteStreamParser(body).parse((symbol, close) -> recordPrice(symbol, close, now));
+        }
+        // The pre-streaming fetch path: whole body as text, then the full tree
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            response.append(line);
+        }
+        JSONArray data = new JSONObject(response.toString()).getJSONArray("data");
+        for (int i = 0; i < data.length(); i++) {
+            JSONObject stock = data.getJSONObject(i);
+            recordPrice(stock.getString("symbol"), stock.getDouble("close"), now);
+        }
+        return data.length();
+    }
 
-                System.out.println("Updated " + symbol + ": $" + price + " at " + 
-                    new SimpleDateFormat("HH:mm:ss").format(new Date()));
+    // Same shape and fields as a real eod response
+    private static byte[] samplePayload(int symbols) {
+        StringBuilder json = new StringBuilder("{\"pagination\":{\"limit\":").append(symbols)
+            .append(",\"offset\":0,\"count\":").append(symbols).append(",\"total\":").append(symbols).append("},\"data\":[");
+        Random random = new Random(42);
+        for (int i = 0; i < symbols; i++) {
+            double close = 10 + random.nextInt(100_000) / 100.0;
+            if (i > 0) {
+                json.append(',');
             }
-            conn.disconnect();
-        } catch (Exception e) {
-            System.out.println("Error fetching stock prices: " + e.getMessage());
+            json.append("{\"open\":").append(close - 1).append(",\"high\":").append(close + 2)
+                .append(",\"low\":").append(close - 2).append(",\"close\":").append(close)
+                .append(",\"volume\":").append(random.nextInt(50_000_000)).append(".0")
+                .append(",\"adj_high\":").append(close + 2).append(",\"adj_low\":").append(close - 2)
+                .append(",\"adj_close\":").append(close).append(",\"adj_open\":").append(close - 1)
+                .append(",\"adj_volume\":").append(random.nextInt(50_000_000)).append(".0")
+                .append(",\"split_factor\":1.0,\"dividend\":0.0,\"symbol\":\"SYM").append(i)
+                .append("\",\"exchange\":\"XNAS\",\"date\":\"2025-02-25T00:00:00+0000\"}");
         }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Appends to the symbol's history unless it stopped being tracked while the request was out.
+    // Allocates nothing: the ring overwrites its oldest tick once full.
+    private static boolean recordPrice(String symbol, double price, long timeMillis) {
+        PriceRing ring = priceHistory.get(symbol);
+        if (ring == null) {
+            return false;
+        }
+        ring.add(price, timeMillis);
+        return true;
     }
 
     // Display stocks and simple "chart"
@@ -119,17 +626,21 @@ public class StockTracker {
             System.out.println("No stocks tracked.");
             return;
         }
+        double[] prices = new double[DISPLAY_DEPTH];
+        long[] times = new long[DISPLAY_DEPTH];
+        DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
         for (String symbol : trackedStocks) {
-            List<Double> prices = priceHistory.getOrDefault(symbol, Collections.emptyList());
+            PriceRing ring = priceHistory.get(symbol);
+            int count = ring != null ? ring.window(DISPLAY_DEPTH, prices, times) : 0;
             System.out.println("\n" + symbol + ":");
-            if (prices.isEmpty()) {
+            if (count == 0) {
                 System.out.println("No data yet.");
             } else {
-                System.out.println("Latest Price: $" + prices.get(prices.size() - 1));
-                System.out.println("Price History (last " + prices.size() + " updates):");
-                for (int i = 0; i < prices.size(); i++) {
-                    System.out.print(String.format("%.2f ", prices.get(i)));
-                    for (int j = 0; j < prices.get(i) / 10; j++) System.out.print("*"); // Simple "chart"
+                System.out.println("Latest Price: $" + prices[count - 1]);
+                System.out.println("Price History (last " + count + " of " + ring.size() + " updates kept):");
+                for (int i = 0; i < count; i++) {
+                    System.out.print(timeFormat.format(Instant.ofEpochMilli(times[i])) + String.format(" %.2f ", prices[i]));
+                    for (int j = 0; j < prices[i] / 10; j++) System.out.print("*"); // Simple "chart"
                     System.out.println();
                 }
             }
@@ -138,10 +649,10 @@ public class StockTracker {
 
     // Add a stock to track
     private static void addStock(String symbol) {
-        if (!trackedStocks.contains(symbol)) {
-            trackedStocks.add(symbol);
+        priceHistory.computeIfAbsent(symbol, k -> new PriceRing(HISTORY_DEPTH));
+        if (trackedStocks.add(symbol)) {
             System.out.println(symbol + " added.");
-            fetchAndUpdatePrices(); // Immediate update
+            fetchAndUpdatePrices(List.of(symbol)); // Immediate update, in the background
         } else {
             System.out.println(symbol + " already tracked.");
         }
@@ -170,14 +681,16 @@ public class StockTracker {
 
     // Check alerts in a separate thread
     private static void checkAlerts() {
+        double[] lastTwo = new double[2];
+        long[] lastTwoTimes = new long[2];
         for (Map.Entry<String, Double> entry : alerts.entrySet()) {
             String symbol = entry.getKey();
             double alertPrice = entry.getValue();
-            List<Double> prices = priceHistory.getOrDefault(symbol, Collections.emptyList());
-            if (!prices.isEmpty()) {
-                double currentPrice = prices.get(prices.size() - 1);
-                if ((currentPrice >= alertPrice && prices.get(prices.size() - 2) < alertPrice) ||
-                    (currentPrice <= alertPrice && prices.get(prices.size() - 2) > alertPrice)) {
+            PriceRing ring = priceHistory.get(symbol);
+            if (ring != null && ring.window(2, lastTwo, lastTwoTimes) == 2) {
+                double currentPrice = lastTwo[1];
+                if ((currentPrice >= alertPrice && lastTwo[0] < alertPrice) ||
+                    (currentPrice <= alertPrice && lastTwo[0] > alertPrice)) {
                     System.out.println("ALERT: " + symbol + " hit $" + currentPrice + 
                         " (target: $" + alertPrice + ")");
                 }
@@ -190,7 +703,11 @@ public class StockTracker {
         try (BufferedReader reader = new BufferedReader(new FileReader(STOCK_FILE))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                trackedStocks.add(line.trim());
+                String symbol = line.trim();
+                if (!symbol.isEmpty()) {
+                    priceHistory.computeIfAbsent(symbol, k -> new PriceRing(HISTORY_DEPTH));
+                    trackedStocks.add(symbol);
+                }
             }
             System.out.println("Loaded " + trackedStocks.size() + " stocks from file.");
         } catch (FileNotFoundException e) {
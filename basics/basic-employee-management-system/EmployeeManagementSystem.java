@@ -1,7 +1,35 @@
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.*;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.GZIPOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.lang.management.ManagementFactory;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
 
 class Employee {
     private int id;
@@ -31,138 +59,2759 @@ class Employee {
     }
 }
 
-class EmployeeManager {
+// Bounded JDBC connection pool. Callers borrow with getConnection() and hand the connection back
+// by closing it, so try-with-resources works unchanged. Connections are validated on borrow,
+// retired after a maximum lifetime and evicted when idle; broken ones are discarded and replaced
+// on demand, which lets the app ride out a database restart.
+class ConnectionPool implements AutoCloseable {
+    // A connection used this recently is assumed healthy and skips the validation round trip
+    private static final long VALIDATE_AFTER_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String catalog;
+    private final long waitTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    // One permit per connection that may exist, idle or borrowed
+    private final Semaphore permits;
+    // Most recently returned first, so a few hot connections serve light load and the rest age out
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private static final class PooledConnection {
+        final Connection raw;
+        final long createdAt = System.currentTimeMillis();
+        long lastUsed = createdAt;
+        boolean broken;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+        }
+    }
+
+    public ConnectionPool(String url, String user, String password, String catalog, int maxSize,
+                          long waitTimeoutMillis, long idleTimeoutMillis, long maxLifetimeMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.catalog = catalog;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, maxLifetimeMillis) / 4);
+        evictor.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(waitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + waitTimeoutMillis + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        try {
+            while (true) {
+                PooledConnection pooled;
+                synchronized (idle) {
+                    pooled = idle.pollFirst();
+                }
+                if (pooled == null) {
+                    return wrap(open());
+                }
+                long now = System.currentTimeMillis();
+                if (now - pooled.createdAt >= maxLifetimeMillis
+                    || now - pooled.lastUsed > VALIDATE_AFTER_MILLIS && !isValid(pooled)) {
+                    closeQuietly(pooled);
+                    continue;
+                }
+                return wrap(pooled);
+            }
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        List<PooledConnection> drained;
+        synchronized (idle) {
+            drained = new ArrayList<>(idle);
+            idle.clear();
+        }
+        drained.forEach(this::closeQuietly);
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        try {
+            if (catalog != null) {
+                raw.setCatalog(catalog);
+            }
+        } catch (SQLException e) {
+            raw.close();
+            throw e;
+        }
+        return new PooledConnection(raw);
+    }
+
+    // Hands out a proxy whose close() returns the connection instead of closing it
+    private Connection wrap(PooledConnection pooled) {
+        boolean[] returned = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "close" -> {
+                        if (!returned[0]) {
+                            returned[0] = true;
+                            release(pooled);
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return returned[0] || pooled.raw.isClosed();
+                    }
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    case "toString" -> {
+                        return "Pooled" + pooled.raw;
+                    }
+                    default -> { }
+                }
+                if (returned[0]) {
+                    throw new SQLException("Connection already returned to the pool");
+                }
+                try {
+                    return method.invoke(pooled.raw, args);
+                } catch (InvocationTargetException e) {
+                    Throwable cause = e.getCause();
+                    // SQLState class 08 is a connection failure, never hand this connection out again
+                    if (cause instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                        pooled.broken = true;
+                    }
+                    throw cause;
+                }
+            });
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (!pooled.broken && !closed && !pooled.raw.getAutoCommit()) {
+                // Leave no half-finished transaction behind for the next borrower
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            pooled.broken = true;
+        }
+        long now = System.currentTimeMillis();
+        if (pooled.broken || closed || now - pooled.createdAt >= maxLifetimeMillis) {
+            closeQuietly(pooled);
+        } else {
+            pooled.lastUsed = now;
+            synchronized (idle) {
+                idle.addFirst(pooled);
+            }
+        }
+        permits.release();
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (idle) {
+            for (Iterator<PooledConnection> it = idle.iterator(); it.hasNext(); ) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastUsed >= idleTimeoutMillis || now - pooled.createdAt >= maxLifetimeMillis) {
+                    it.remove();
+                    expired.add(pooled);
+                }
+            }
+        }
+        expired.forEach(this::closeQuietly);
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void closeQuietly(PooledConnection pooled) {
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            // Already dead, nothing to clean up
+        }
+    }
+}
+
+// Lock-free latency histogram in nanoseconds. Each power of two is split into 8 linear buckets,
+// so a percentile is within about 12% of the true value and the histogram never grows.
+class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        max.accumulate(nanos);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    // Upper bound of the bucket holding the given percentile, capped at the maximum seen
+    long percentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift) + (1L << shift) - 1;
+    }
+}
+
+// Management interfaces of JdbcMetrics. JMX only accepts public interfaces, and a single-file
+// program has no second public top-level type, hence the holder class.
+class JdbcManagement {
+    public interface MetricsMXBean {
+        long getSlowQueryMillis();
+        void setSlowQueryMillis(long millis);
+        long getSlowQueries();
+        String[] getOperations();
+    }
+
+    public interface OperationMXBean {
+        long getCalls();
+        long getErrors();
+        long getRows();
+        double getP50Millis();
+        double getP99Millis();
+        double getMaxMillis();
+        double getConnectP99Millis();
+        double getExecuteP99Millis();
+        double getMapP99Millis();
+        String getLastError();
+    }
+}
+
+// Timings, row counts and errors of one kind of EmployeeManager operation. Besides the total,
+// each call is split into waiting for a connection, executing statements, and mapping or
+// writing out rows, which tells a slow pool from a slow query from a slow consumer.
+class JdbcOperationStats implements JdbcManagement.OperationMXBean {
+    final LatencyHistogram total = new LatencyHistogram();
+    final LatencyHistogram connect = new LatencyHistogram();
+    final LatencyHistogram execute = new LatencyHistogram();
+    final LatencyHistogram map = new LatencyHistogram();
+    final LongAdder errors = new LongAdder();
+    final LongAdder rows = new LongAdder();
+    volatile String lastError;
+
+    @Override public long getCalls() { return total.count(); }
+    @Override public long getErrors() { return errors.sum(); }
+    @Override public long getRows() { return rows.sum(); }
+    @Override public double getP50Millis() { return total.percentile(50) / 1e6; }
+    @Override public double getP99Millis() { return total.percentile(99) / 1e6; }
+    @Override public double getMaxMillis() { return total.max() / 1e6; }
+    @Override public double getConnectP99Millis() { return connect.percentile(99) / 1e6; }
+    @Override public double getExecuteP99Millis() { return execute.percentile(99) / 1e6; }
+    @Override public double getMapP99Millis() { return map.percentile(99) / 1e6; }
+    @Override public String getLastError() { return lastError; }
+
+    @Override
+    public String toString() {
+        return String.format("%d calls, %d rows, %d errors | p50 %.2f ms, p99 %.2f ms, max %.2f ms"
+                + " | p99 connect %.2f ms, execute %.2f ms, map %.2f ms",
+            getCalls(), getRows(), getErrors(), getP50Millis(), getP99Millis(), getMaxMillis(),
+            getConnectP99Millis(), getExecuteP99Millis(), getMapP99Millis());
+    }
+}
+
+// JFR event per EmployeeManager operation, recorded only while a recording enables it
+// (e.g. java -XX:StartFlightRecording). The event's duration is the whole call.
+@Name("employees.JdbcOperation")
+@Label("JDBC Operation")
+@Category({"Employee Management", "JDBC"})
+@StackTrace(false)
+class JdbcOperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Connect Time")
+    @Timespan
+    long connectTime;
+
+    @Label("Execute Time")
+    @Timespan
+    long executeTime;
+
+    @Label("Map Time")
+    @Timespan
+    long mapTime;
+
+    @Label("Error")
+    String error;
+}
+
+// Per-operation JDBC statistics for the process, published over JMX as employees:type=JdbcMetrics
+// and one employees:type=JdbcMetrics,operation=<name> bean per operation. Calls slower than the
+// threshold (DB_SLOW_QUERY_MS, adjustable over JMX, negative to disable) go to the slow-query
+// log on stderr with their phase breakdown.
+class JdbcMetrics implements JdbcManagement.MetricsMXBean {
+    private final Map<String, JdbcOperationStats> operations = new ConcurrentSkipListMap<>();
+    private final LongAdder slowQueries = new LongAdder();
+    private volatile long slowQueryMillis;
+
+    JdbcMetrics(long slowQueryMillis) {
+        this.slowQueryMillis = slowQueryMillis;
+        register("employees:type=JdbcMetrics", this);
+    }
+
+    JdbcTimer start(String operation, String sql) {
+        return new JdbcTimer(this, operation, sql);
+    }
+
+    void record(JdbcTimer timer, long connectNanos, long executeNanos, long mapNanos, long totalNanos) {
+        JdbcOperationStats stats = operations.computeIfAbsent(timer.operation, operation -> {
+            JdbcOperationStats created = new JdbcOperationStats();
+            register("employees:type=JdbcMetrics,operation=" + operation, created);
+            return created;
+        });
+        stats.total.record(totalNanos);
+        stats.connect.record(connectNanos);
+        stats.execute.record(executeNanos);
+        stats.map.record(mapNanos);
+        stats.rows.add(timer.rows);
+        if (timer.error != null) {
+            stats.errors.increment();
+            stats.lastError = (timer.error instanceof SQLException sql ? sql.getSQLState() + " " : "") + timer.error.getMessage();
+        }
+        long threshold = slowQueryMillis;
+        if (threshold >= 0 && totalNanos >= threshold * 1_000_000) {
+            slowQueries.increment();
+            System.err.printf("Slow query: %s took %.1f ms (connect %.1f, execute %.1f, map %.1f), %d rows%s: %s%n",
+                timer.operation, totalNanos / 1e6, connectNanos / 1e6, executeNanos / 1e6, mapNanos / 1e6, timer.rows,
+                timer.error != null ? ", failed with " + timer.error.getMessage() : "", timer.sql);
+        }
+    }
+
+    private static void register(String name, Object bean) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, new ObjectName(name));
+        } catch (InstanceAlreadyExistsException e) {
+            // Another manager in the same JVM got there first
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override public long getSlowQueryMillis() { return slowQueryMillis; }
+    @Override public void setSlowQueryMillis(long millis) { slowQueryMillis = millis; }
+    @Override public long getSlowQueries() { return slowQueries.sum(); }
+    @Override public String[] getOperations() { return operations.keySet().toArray(new String[0]); }
+
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        operations.forEach((operation, stats) -> report.append(operation).append(": ").append(stats).append('\n'));
+        report.append("Slow queries (>= ").append(slowQueryMillis).append(" ms): ").append(slowQueries.sum());
+        return report.toString();
+    }
+}
+
+// Times one operation. Wrap the connection acquisition in connected() and mark executed() once the
+// last statement (and commit, for transactions) is done; report rows() or failed() and always
+// stop(), e.g. from a finally.
+class JdbcTimer {
+    final String operation;
+    final String sql;
+    long rows;
+    Exception error;
+    private final JdbcMetrics metrics;
+    private final JdbcOperationEvent event = new JdbcOperationEvent();
+    private final long start = System.nanoTime();
+    private long connected;
+    private long executed;
+
+    JdbcTimer(JdbcMetrics metrics, String operation, String sql) {
+        this.metrics = metrics;
+        this.operation = operation;
+        this.sql = sql;
+        event.begin();
+    }
+
+    <T> T connected(T connection) {
+        connected = System.nanoTime();
+        return connection;
+    }
+
+    <T> T executed(T result) {
+        executed = System.nanoTime();
+        return result;
+    }
+
+    void rows(long rows) {
+        this.rows = rows;
+    }
+
+    void failed(Exception e) {
+        error = e;
+    }
+
+    // A phase that never finished (the operation failed in it) runs until stop, later ones are empty
+    void stop() {
+        long end = System.nanoTime();
+        long connectedAt = connected != 0 ? connected : end;
+        long executedAt = executed != 0 ? executed : connected != 0 ? end : connectedAt;
+        long connectNanos = connectedAt - start;
+        long executeNanos = executedAt - connectedAt;
+        long mapNanos = end - executedAt;
+        metrics.record(this, connectNanos, executeNanos, mapNanos, end - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.sql = sql;
+            event.rows = rows;
+            event.connectTime = connectNanos;
+            event.executeTime = executeNanos;
+            event.mapTime = mapNanos;
+            event.error = error != null ? error.getMessage() : null;
+            event.commit();
+        }
+    }
+}
+
+// Orders for paging; ties are broken by id so every row has a unique position
+enum EmployeeSort {
+    ID("id"), SALARY("salary"), NAME("name");
+
+    final String column;
+
+    EmployeeSort(String column) {
+        this.column = column;
+    }
+}
+
+// Composable employee filter. EmployeeManager compiles it into one parameterized query so combined
+// conditions are answered by the database with its indexes; other repositories read the criteria
+// through the accessors and evaluate them directly.
+class EmployeeQuery {
+    private Integer id;
+    private String department;
+    private double minSalary = Double.NEGATIVE_INFINITY;
+    private double maxSalary = Double.POSITIVE_INFINITY;
+    private String namePrefix;
+    private EmployeeSort sort;
+    private Employee after;
+    private int limit;
+
+    public EmployeeQuery id(int id) {
+        this.id = id;
+        return this;
+    }
+
+    // The table's default collation compares case-insensitively, like the old equalsIgnoreCase filter
+    public EmployeeQuery department(String department) {
+        this.department = department;
+        return this;
+    }
+
+    public EmployeeQuery salaryBetween(double min, double max) {
+        return minSalary(min).maxSalary(max);
+    }
+
+    public EmployeeQuery minSalary(double min) {
+        minSalary = Math.max(minSalary, min);
+        return this;
+    }
+
+    public EmployeeQuery maxSalary(double max) {
+        maxSalary = Math.min(maxSalary, max);
+        return this;
+    }
+
+    public EmployeeQuery namePrefix(String prefix) {
+        namePrefix = prefix;
+        return this;
+    }
+
+    // Keyset page: the rows that come strictly after the given employee in sort order (null for the
+    // first page). Each page is a single index range read however deep it is, unlike OFFSET.
+    // Returns a new query so one filter can produce every page.
+    public EmployeeQuery page(EmployeeSort sort, Employee after, int size) {
+        EmployeeQuery page = new EmployeeQuery();
+        page.id = id;
+        page.department = department;
+        page.minSalary = minSalary;
+        page.maxSalary = maxSalary;
+        page.namePrefix = namePrefix;
+        page.sort = sort;
+        page.after = after;
+        page.limit = size;
+        return page;
+    }
+
+    Integer getId() { return id; }
+    String getDepartment() { return department; }
+    double getMinSalary() { return minSalary; }
+    double getMaxSalary() { return maxSalary; }
+    String getNamePrefix() { return namePrefix; }
+    EmployeeSort getSort() { return sort; }
+    Employee getAfter() { return after; }
+    int getLimit() { return limit; }
+
+    public String toSql() {
+        List<String> conditions = new ArrayList<>();
+        build(conditions, new ArrayList<>());
+        StringBuilder sql = new StringBuilder("SELECT id, name, department, salary FROM employees");
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (sort != null) {
+            sql.append(" ORDER BY ").append(sort == EmployeeSort.ID ? "id" : sort.column + ", id")
+                .append(" LIMIT ").append(limit);
+        }
+        return sql.toString();
+    }
+
+    public void bind(PreparedStatement pstmt) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        build(new ArrayList<>(), params);
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+    }
+
+    private void build(List<String> conditions, List<Object> params) {
+        if (id != null) {
+            conditions.add("id = ?");
+            params.add(id);
+        }
+        if (department != null) {
+            conditions.add("department = ?");
+            params.add(department);
+        }
+        if (minSalary != Double.NEGATIVE_INFINITY) {
+            conditions.add("salary >= ?");
+            params.add(minSalary);
+        }
+        if (maxSalary != Double.POSITIVE_INFINITY) {
+            conditions.add("salary <= ?");
+            params.add(maxSalary);
+        }
+        if (namePrefix != null) {
+            // Anchored LIKE, so it can use the name index; wildcards in the prefix are matched literally
+            conditions.add("name LIKE ?");
+            params.add(namePrefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+        if (after != null) {
+            if (sort == EmployeeSort.ID) {
+                conditions.add("id > ?");
+                params.add(after.getId());
+            } else {
+                // Spelled out rather than as a row constructor, which not every optimizer turns into a
+                // range scan; the leading column > ? bounds the read on the (column, id) index
+                Object value = sort == EmployeeSort.SALARY ? after.getSalary() : after.getName();
+                conditions.add("(" + sort.column + " > ? OR (" + sort.column + " = ? AND id > ?))");
+                params.add(value);
+                params.add(value);
+                params.add(after.getId());
+            }
+        }
+    }
+}
+
+// Size-bounded LRU cache of employees by id, shared by all threads. Entries are copied in and out
+// so callers can't mutate cached state. Writers invalidate after the database write commits; each
+// invalidation bumps a generation, and a read-through load that started before it is not stored,
+// so a stale row can never be cached over a newer write.
+class EmployeeCache {
+    private final int capacity;
+    private final Map<Integer, Employee> entries;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public EmployeeCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Employee> eldest) {
+                if (size() > EmployeeCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Employee get(int id) {
+        Employee cached;
+        synchronized (entries) {
+            cached = entries.get(id);
+        }
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(cached);
+    }
+
+    // Taken before loading from the database and handed back to putIfCurrent
+    public long stamp() {
+        return generation.get();
+    }
+
+    public void putIfCurrent(Employee emp, long stamp) {
+        synchronized (entries) {
+            if (generation.get() == stamp) {
+                entries.put(emp.getId(), copy(emp));
+            }
+        }
+    }
+
+    public void invalidate(int id) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(id);
+        }
+        invalidations.increment();
+    }
+
+    public String stats() {
+        long h = hits.sum(), m = misses.sum();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return String.format("size %d/%d, hits %d, misses %d (hit rate %.1f%%), evictions %d, invalidations %d",
+            size, capacity, h, m, h + m == 0 ? 0.0 : 100.0 * h / (h + m), evictions.sum(), invalidations.sum());
+    }
+
+    private static Employee copy(Employee emp) {
+        return new Employee(emp.getId(), emp.getName(), emp.getDepartment(), emp.getSalary());
+    }
+}
+
+// Headcount and salary aggregates for one department
+class DepartmentStats {
+    private final String department;
+    private long count;
+    private double total;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public DepartmentStats(String department) {
+        this.department = department;
+    }
+
+    public DepartmentStats(String department, long count, double total, double min, double max) {
+        this.department = department;
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getDepartment() { return department; }
+    public long getCount() { return count; }
+    public double getTotal() { return total; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    public double getAverage() { return count == 0 ? 0 : total / count; }
+
+    void include(double salary) {
+        count++;
+        total += salary;
+        min = Math.min(min, salary);
+        max = Math.max(max, salary);
+    }
+
+    // False if the salary was the min or max, whose successor can't be known without a query
+    boolean exclude(double salary) {
+        count--;
+        total -= salary;
+        return salary > min && salary < max;
+    }
+
+    DepartmentStats copy() {
+        return new DepartmentStats(department, count, total, min, max);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Dept: %s | Employees: %d | Total: %.2f | Min: %.2f | Max: %.2f | Avg: %.2f",
+            department, count, total, min, max, getAverage());
+    }
+}
+
+// In-memory per-department aggregates kept current by EmployeeManager's writes, so reading them
+// costs O(departments). Count and total follow every change exactly. Removing a department's
+// current min or max marks it stale, and it is recomputed with one indexed query on the next read.
+// Departments are keyed case-insensitively, like the column's collation groups them.
+class DepartmentSummary {
+    private final Map<String, DepartmentStats> departments = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final Set<String> stale = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private boolean rebuild;
+
+    DepartmentSummary(List<DepartmentStats> initial) {
+        initial.forEach(stats -> departments.put(stats.getDepartment(), stats));
+    }
+
+    synchronized void add(Employee emp) {
+        departments.computeIfAbsent(emp.getDepartment(), DepartmentStats::new).include(emp.getSalary());
+    }
+
+    synchronized void remove(Employee emp) {
+        DepartmentStats stats = departments.get(emp.getDepartment());
+        if (stats == null || !stats.exclude(emp.getSalary())) {
+            stale.add(emp.getDepartment());
+        }
+        if (stats != null && stats.getCount() == 0) {
+            departments.remove(emp.getDepartment());
+            stale.remove(emp.getDepartment());
+        }
+    }
+
+    // A change whose previous values are unknown, only a full rebuild can account for it
+    synchronized void invalidateAll() {
+        rebuild = true;
+    }
+
+    synchronized boolean isStale() {
+        return rebuild || !stale.isEmpty();
+    }
+
+    synchronized boolean needsRebuild() {
+        return rebuild;
+    }
+
+    synchronized List<String> staleDepartments() {
+        return new ArrayList<>(stale);
+    }
+
+    synchronized void reload(String department, List<DepartmentStats> fresh) {
+        stale.remove(department);
+        departments.remove(department);
+        fresh.forEach(stats -> departments.put(stats.getDepartment(), stats));
+    }
+
+    synchronized List<DepartmentStats> snapshot() {
+        List<DepartmentStats> copies = new ArrayList<>(departments.size());
+        departments.values().forEach(stats -> copies.add(stats.copy()));
+        return copies;
+    }
+}
+
+// Storage behind the employee menu. EmployeeManager keeps employees in MySQL; the columnar
+// in-memory store needs no database and is the baseline to measure the JDBC path against.
+interface EmployeeRepository {
+    void addEmployee(Employee emp);
+
+    // All or nothing; throws if the batch could not be stored, e.g. because of a duplicate id
+    void insertBatch(Collection<Employee> employees) throws SQLException;
+
+    void editEmployee(Employee emp);
+
+    void removeEmployee(int id);
+
+    List<Employee> findEmployees(EmployeeQuery query);
+
+    List<DepartmentStats> getDepartmentStats();
+
+    void exportToCSV(String filename, int shards);
+
+    void close();
+
+    default void addEmployees(Collection<Employee> employees) {
+        try {
+            insertBatch(employees);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Null if there is no such employee
+    default Employee getEmployee(int id) {
+        List<Employee> found = findEmployees(new EmployeeQuery().id(id));
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    default List<Employee> getAllEmployees() {
+        return findEmployees(new EmployeeQuery());
+    }
+
+    default List<Employee> filterByDepartment(String department) {
+        return findEmployees(new EmployeeQuery().department(department));
+    }
+
+    default List<Employee> filterBySalaryRange(double min, double max) {
+        return findEmployees(new EmployeeQuery().salaryBetween(min, max));
+    }
+
+    // One keyset page of the whole table; pass the last employee of the previous page as after
+    default List<Employee> getPage(EmployeeSort sort, Employee after, int pageSize) {
+        return findEmployees(new EmployeeQuery().page(sort, after, pageSize));
+    }
+
+    // Lazily pages through the rows matching the filter, holding one page in memory at a time
+    default Stream<Employee> streamEmployees(EmployeeQuery filter, EmployeeSort sort, int pageSize) {
+        Iterator<Employee> rows = new Iterator<>() {
+            private List<Employee> page;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (page == null) {
+                    page = findEmployees(filter.page(sort, null, pageSize));
+                } else if (next == page.size() && page.size() == pageSize) {
+                    page = findEmployees(filter.page(sort, page.get(pageSize - 1), pageSize));
+                    next = 0;
+                }
+                return next < page.size();
+            }
+
+            @Override
+            public Employee next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // Stores that keep no incremental summary just aggregate on demand
+    default List<DepartmentStats> getDepartmentSummary() {
+        return getDepartmentStats();
+    }
+
+    default String cacheStats() {
+        return "no cache in front of this store";
+    }
+
+    default String jdbcStats() {
+        return "this store does not use JDBC";
+    }
+
+    default void exportToCSV(String filename) {
+        exportToCSV(filename, 1);
+    }
+}
+
+// The row format every repository exports and EmployeeImporter reads back
+class EmployeeCsv {
+    static final String HEADER = "ID,Name,Department,Salary";
+
+    // A .gz filename is gzip-compressed
+    static BufferedWriter openWriter(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (file.toString().endsWith(".gz")) {
+            try {
+                out = new GZIPOutputStream(out, 1 << 16);
+            } catch (IOException e) {
+                out.close();
+                throw e;
+            }
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    static void writeRow(BufferedWriter writer, int id, String name, String department, double salary) throws IOException {
+        writer.write(Integer.toString(id));
+        writer.write(',');
+        writeQuoted(writer, name);
+        writer.write(',');
+        writeQuoted(writer, department);
+        writer.write(',');
+        // Same digits as %.2f, without a Formatter per row
+        writer.write(BigDecimal.valueOf(salary).setScale(2, RoundingMode.HALF_UP).toPlainString());
+        writer.newLine();
+    }
+
+    private static void writeQuoted(Writer writer, String value) throws IOException {
+        writer.write('"');
+        writer.write(value.indexOf('"') < 0 ? value : value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
+
+class EmployeeManager implements EmployeeRepository {
     // Use environment variables for flexibility in Docker
     private static final String DB_URL = System.getenv("DB_URL") != null ? 
-        System.getenv("DB_URL") : "jdbc:mysql://mysql:3306/employees?useSSL=false&allowPublicKeyRetrieval=true";
+        System.getenv("DB_URL") : "jdbc:mysql://mysql:3306/employees?useSSL=false&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
     private static final String DB_USER = System.getenv("DB_USER") != null ? 
         System.getenv("DB_USER") : "root";
     private static final String DB_PASSWORD = System.getenv("DB_PASSWORD") != null ? 
         System.getenv("DB_PASSWORD") : "password";
+    // Pool sizing and timeouts, overridable the same way
+    static final int POOL_SIZE = envInt("DB_POOL_SIZE", 10);
+    private static final long POOL_WAIT_TIMEOUT_MS = envInt("DB_POOL_WAIT_TIMEOUT_MS", 30_000);
+    private static final long POOL_IDLE_TIMEOUT_MS = envInt("DB_POOL_IDLE_TIMEOUT_MS", 600_000);
+    private static final long POOL_MAX_LIFETIME_MS = envInt("DB_POOL_MAX_LIFETIME_MS", 1_800_000);
+    // Rows per executeBatch round trip for bulk inserts
+    public static final int BATCH_SIZE = envInt("DB_BATCH_SIZE", 1000);
+    static final String INSERT_SQL = "INSERT INTO employees (id, name, department, salary) VALUES (?, ?, ?, ?)";
+    static final String UPDATE_SQL = "UPDATE employees SET name = ?, department = ?, salary = ? WHERE id = ?";
+    static final String DELETE_SQL = "DELETE FROM employees WHERE id = ?";
+    // DB_WRITE_BEHIND=true routes addEmployee/editEmployee/removeEmployee through the write-behind
+    // queue; the *Async methods always use it
+    private static final boolean WRITE_BEHIND = Boolean.parseBoolean(System.getenv("DB_WRITE_BEHIND"));
+    private static final int WRITE_QUEUE_SIZE = envInt("DB_WRITE_QUEUE_SIZE", 10_000);
+    private static final int CACHE_SIZE = envInt("EMPLOYEE_CACHE_SIZE", 10_000);
+    // Latency of every operation below, shared by all managers in the process
+    static final JdbcMetrics METRICS = new JdbcMetrics(envInt("DB_SLOW_QUERY_MS", 500));
+    private final ConnectionPool pool;
+    private final EmployeeCache cache = new EmployeeCache(CACHE_SIZE);
+    // Null until the first summary read; from then on every write keeps it current. Writes commit
+    // and apply their delta under the read side of the gate, building or refreshing the summary
+    // takes the write side, so a refresh query never sees a commit without its delta or vice versa.
+    // Writers enter the gate before taking a connection or any row lock: waiting for the gate while
+    // holding either could deadlock with a queued refresh that needs a connection, or with a writer
+    // inside the gate that needs those rows.
+    private volatile DepartmentSummary summary;
+    private final ReentrantReadWriteLock summaryGate = new ReentrantReadWriteLock();
+    // Started on first use
+    private WriteBehindQueue writeBehind;
+
+    public EmployeeManager() {
+        pool = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, "employees", POOL_SIZE,
+            POOL_WAIT_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_MAX_LIFETIME_MS);
+        initializeDatabase();
+    }
+
+    static int envInt(String name, int defaultValue) {
+        return System.getenv(name) != null ? Integer.parseInt(System.getenv(name)) : defaultValue;
+    }
+
+    // Runs once on a dedicated connection: the pool's connections select the employees
+    // database, which may not exist yet
+    private void initializeDatabase() {
+        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD)) {
+            Statement stmt = conn.createStatement();
+            // Create database and table if not exists
+            stmt.execute("CREATE DATABASE IF NOT EXISTS employees");
+            stmt.execute("USE employees");
+            String sql = "CREATE TABLE IF NOT EXISTS employees (" +
+                "id INTEGER PRIMARY KEY, " +
+                "name VARCHAR(255) NOT NULL, " +
+                "department VARCHAR(255) NOT NULL, " +
+                "salary DOUBLE NOT NULL)";
+            stmt.execute(sql);
+            // Department leads the composite index so department + salary range is a single range scan
+            createIndex(stmt, "idx_employees_department_salary", "department, salary");
+            // Keyset pages sort on (column, id), so id is spelled out as the index's tie-breaker; these
+            // replace the single-column indexes of earlier versions
+            createIndex(stmt, "idx_employees_salary_id", "salary, id");
+            createIndex(stmt, "idx_employees_name_id", "name, id");
+            dropIndex(stmt, "idx_employees_salary");
+            dropIndex(stmt, "idx_employees_name");
+            stmt.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // MySQL has no CREATE INDEX IF NOT EXISTS, an existing index reports ER_DUP_KEYNAME (1061)
+    private static void createIndex(Statement stmt, String name, String columns) throws SQLException {
+        try {
+            stmt.execute("CREATE INDEX " + name + " ON employees (" + columns + ")");
+        } catch (SQLException e) {
+            if (e.getErrorCode() != 1061) {
+                throw e;
+            }
+        }
+    }
+
+    // Likewise no DROP INDEX IF EXISTS, a missing index reports ER_CANT_DROP_FIELD_OR_KEY (1091)
+    private static void dropIndex(Statement stmt, String name) throws SQLException {
+        try {
+            stmt.execute("DROP INDEX " + name + " ON employees");
+        } catch (SQLException e) {
+            if (e.getErrorCode() != 1091) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void addEmployee(Employee emp) {
+        if (WRITE_BEHIND) {
+            reportFailure(addEmployeeAsync(emp));
+            return;
+        }
+        summaryGate.readLock().lock();
+        JdbcTimer timer = METRICS.start("addEmployee", INSERT_SQL);
+        try (Connection conn = timer.connected(pool.getConnection());
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            bindInsert(pstmt, emp);
+            timer.rows(timer.executed(pstmt.executeUpdate()));
+            if (summary != null) {
+                summary.add(emp);
+            }
+        } catch (SQLException e) {
+            timer.failed(e);
+            e.printStackTrace();
+        } finally {
+            summaryGate.readLock().unlock();
+            timer.stop();
+        }
+    }
+
+    // The rows go out BATCH_SIZE per round trip inside a single transaction
+    @Override
+    public void insertBatch(Collection<Employee> employees) throws SQLException {
+        summaryGate.readLock().lock();
+        JdbcTimer timer = METRICS.start("insertBatch", INSERT_SQL);
+        try (Connection conn = timer.connected(pool.getConnection());
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+            conn.setAutoCommit(false);
+            try {
+                int pending = 0;
+                for (Employee emp : employees) {
+                    bindInsert(pstmt, emp);
+                    pstmt.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    pstmt.executeBatch();
+                }
+                conn.commit();
+                timer.executed(null);
+                timer.rows(employees.size());
+                if (summary != null) {
+                    employees.forEach(summary::add);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            summaryGate.readLock().unlock();
+            timer.stop();
+        }
+    }
+
+    static void bindInsert(PreparedStatement pstmt, Employee emp) throws SQLException {
+        pstmt.setInt(1, emp.getId());
+        pstmt.setString(2, emp.getName());
+        pstmt.setString(3, emp.getDepartment());
+        pstmt.setDouble(4, emp.getSalary());
+    }
+
+    static void bindUpdate(PreparedStatement pstmt, Employee emp) throws SQLException {
+        pstmt.setString(1, emp.getName());
+        pstmt.setString(2, emp.getDepartment());
+        pstmt.setDouble(3, emp.getSalary());
+        pstmt.setInt(4, emp.getId());
+    }
+
+    @Override
+    public void editEmployee(Employee emp) {
+        if (WRITE_BEHIND) {
+            reportFailure(editEmployeeAsync(emp));
+            return;
+        }
+        summaryGate.readLock().lock();
+        JdbcTimer timer = METRICS.start("editEmployee", UPDATE_SQL);
+        try (Connection conn = timer.connected(pool.getConnection());
+             PreparedStatement pstmt = conn.prepareStatement(UPDATE_SQL)) {
+            bindUpdate(pstmt, emp);
+            writeRow(conn, emp.getId(), pstmt, emp, timer);
+        } catch (SQLException e) {
+            timer.failed(e);
+            e.printStackTrace();
+        } finally {
+            summaryGate.readLock().unlock();
+            cache.invalidate(emp.getId());
+            timer.stop();
+        }
+    }
+
+    @Override
+    public void removeEmployee(int id) {
+        if (WRITE_BEHIND) {
+            reportFailure(removeEmployeeAsync(id));
+            return;
+        }
+        summaryGate.readLock().lock();
+        JdbcTimer timer = METRICS.start("removeEmployee", DELETE_SQL);
+        try (Connection conn = timer.connected(pool.getConnection());
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_SQL)) {
+            pstmt.setInt(1, id);
+            writeRow(conn, id, pstmt, null, timer);
+        } catch (SQLException e) {
+            timer.failed(e);
+            e.printStackTrace();
+        } finally {
+            summaryGate.readLock().unlock();
+            cache.invalidate(id);
+            timer.stop();
+        }
+    }
+
+    // Queued variants: the future completes once the change is committed, or fails with the
+    // SQLException of the statement that rejected it. Mutations queued for the same id are applied
+    // in order; there is no ordering against the synchronous methods.
+    public CompletableFuture<Void> addEmployeeAsync(Employee emp) {
+        return writeBehind().submit(WriteBehindQueue.Kind.INSERT, emp.getId(), emp);
+    }
+
+    public CompletableFuture<Void> editEmployeeAsync(Employee emp) {
+        return writeBehind().submit(WriteBehindQueue.Kind.UPDATE, emp.getId(), emp);
+    }
+
+    public CompletableFuture<Void> removeEmployeeAsync(int id) {
+        return writeBehind().submit(WriteBehindQueue.Kind.DELETE, id, null);
+    }
+
+    private synchronized WriteBehindQueue writeBehind() {
+        if (writeBehind == null) {
+            writeBehind = new WriteBehindQueue(this, WRITE_QUEUE_SIZE, BATCH_SIZE);
+        }
+        return writeBehind;
+    }
+
+    private static void reportFailure(CompletableFuture<Void> done) {
+        done.exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+    }
+
+    Connection borrowConnection() throws SQLException {
+        return pool.getConnection();
+    }
+
+    // The write-behind writer keeps its connection between groups, so it cannot simply enter the
+    // gate first. It tries to; if a refresh holds the write side, that refresh may be waiting on
+    // this very connection, so the writer hands the connection back (release) before it blocks.
+    void enterSummaryGate(Runnable release) {
+        if (!summaryGate.readLock().tryLock()) {
+            release.run();
+            summaryGate.readLock().lock();
+        }
+    }
+
+    void exitSummaryGate() {
+        summaryGate.readLock().unlock();
+    }
+
+    // Constraint violations such as a duplicate id, recognised by SQLState class 23 or MySQL's 1062
+    // rather than by type: Connector/J reports a failed batch as a BatchUpdateException carrying the
+    // violation's state, not as an SQLIntegrityConstraintViolationException
+    static boolean isConstraintViolation(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql
+                    && (sql.getErrorCode() == 1062 || sql.getSQLState() != null && sql.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Applies one group from the write-behind queue as a single transaction on the writer's
+    // connection and statements. A group holds at most a few mutations per id, so it goes out in
+    // rounds, the nth round carrying the nth mutation of each id: within a round the ids are all
+    // distinct and deletes, inserts and updates can each be one batch. The summary is patched as in
+    // writeRow, locking the group's rows first to learn what they held. Called inside the gate, see
+    // enterSummaryGate.
+    void applyGroup(Connection conn, PreparedStatement insert, PreparedStatement update, PreparedStatement delete,
+                    List<WriteBehindQueue.Mutation> group) throws SQLException {
+        Set<Integer> ids = new LinkedHashSet<>();
+        List<List<WriteBehindQueue.Mutation>> rounds = new ArrayList<>();
+        Map<Integer, Integer> seen = new HashMap<>();
+        for (WriteBehindQueue.Mutation m : group) {
+            ids.add(m.id);
+            int round = seen.merge(m.id, 1, Integer::sum) - 1;
+            if (round == rounds.size()) {
+                rounds.add(new ArrayList<>());
+            }
+            rounds.get(round).add(m);
+        }
+        // The connection is already held, so the connect phase is empty
+        JdbcTimer timer = METRICS.start("writeBehindGroup", group.size() + " mutations over " + ids.size() + " ids");
+        timer.connected(conn);
+        conn.setAutoCommit(false);
+        try {
+            DepartmentSummary current = summary;
+            Map<Integer, Employee> before = current != null ? lockRows(conn, ids) : Map.of();
+            for (List<WriteBehindQueue.Mutation> round : rounds) {
+                int inserts = 0, updates = 0, deletes = 0;
+                for (WriteBehindQueue.Mutation m : round) {
+                    switch (m.kind) {
+                        case INSERT -> {
+                            bindInsert(insert, m.employee);
+                            insert.addBatch();
+                            inserts++;
+                        }
+                        case UPDATE -> {
+                            bindUpdate(update, m.employee);
+                            update.addBatch();
+                            updates++;
+                        }
+                        case DELETE -> {
+                            delete.setInt(1, m.id);
+                            delete.addBatch();
+                            deletes++;
+                        }
+                    }
+                }
+                if (deletes > 0) {
+                    delete.executeBatch();
+                }
+                if (inserts > 0) {
+                    insert.executeBatch();
+                }
+                if (updates > 0) {
+                    update.executeBatch();
+                }
+            }
+            conn.commit();
+            timer.executed(null);
+            timer.rows(group.size());
+            if (current != null) {
+                // Replay the group over the rows as they were to get each id's final state
+                Map<Integer, Employee> after = new HashMap<>(before);
+                for (WriteBehindQueue.Mutation m : group) {
+                    switch (m.kind) {
+                        case INSERT -> after.put(m.id, m.employee);
+                        case UPDATE -> after.computeIfPresent(m.id, (id, old) -> m.employee);
+                        case DELETE -> after.remove(m.id);
+                    }
+                }
+                before.values().forEach(current::remove);
+                after.values().forEach(current::add);
+            }
+        } catch (SQLException e) {
+            timer.failed(e);
+            insert.clearBatch();
+            update.clearBatch();
+            delete.clearBatch();
+            conn.rollback();
+            throw e;
+        } finally {
+            ids.forEach(cache::invalidate);
+            timer.stop();
+        }
+    }
+
+    private static Map<Integer, Employee> lockRows(Connection conn, Collection<Integer> ids) throws SQLException {
+        String sql = "SELECT id, name, department, salary FROM employees WHERE id IN ("
+            + String.join(", ", Collections.nCopies(ids.size(), "?")) + ") FOR UPDATE";
+        Map<Integer, Employee> rows = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int id : ids) {
+                pstmt.setInt(i++, id);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                rows.put(rs.getInt("id"), new Employee(rs.getInt("id"), rs.getString("name"), rs.getString("department"), rs.getDouble("salary")));
+            }
+        }
+        return rows;
+    }
+
+    // Runs an UPDATE/DELETE of one row and folds it into the summary; called inside the gate. With a
+    // summary active the row is locked FOR UPDATE first to learn the values being replaced. None can
+    // be built while the gate is held, so without one there is nothing to patch.
+    private void writeRow(Connection conn, int id, PreparedStatement write, Employee replacement, JdbcTimer timer)
+            throws SQLException {
+        DepartmentSummary current = summary;
+        Employee old = null;
+        if (current != null) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement lock = conn.prepareStatement(
+                    "SELECT id, name, department, salary FROM employees WHERE id = ? FOR UPDATE")) {
+                lock.setInt(1, id);
+                ResultSet rs = lock.executeQuery();
+                if (rs.next()) {
+                    old = new Employee(rs.getInt("id"), rs.getString("name"), rs.getString("department"), rs.getDouble("salary"));
+                }
+            }
+        }
+        int changed = write.executeUpdate();
+        if (current != null) {
+            conn.commit();
+        }
+        timer.rows(timer.executed(changed));
+        if (current != null && changed > 0) {
+            if (old == null) {
+                current.invalidateAll();
+            } else {
+                current.remove(old);
+                if (replacement != null) {
+                    current.add(replacement);
+                }
+            }
+        }
+    }
+
+    // Aggregates computed by the database; the (department, salary) index covers the query
+    @Override
+    public List<DepartmentStats> getDepartmentStats() {
+        try {
+            return queryDepartmentStats(null);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    // Same figures from the in-memory summary, built on first use and refreshed only where stale
+    @Override
+    public List<DepartmentStats> getDepartmentSummary() {
+        DepartmentSummary current = summary;
+        if (current == null || current.isStale()) {
+            summaryGate.writeLock().lock();
+            try {
+                current = summary;
+                if (current == null || current.needsRebuild()) {
+                    current = new DepartmentSummary(queryDepartmentStats(null));
+                    summary = current;
+                } else {
+                    for (String department : current.staleDepartments()) {
+                        current.reload(department, queryDepartmentStats(department));
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                summaryGate.writeLock().unlock();
+            }
+        }
+        return current != null ? current.snapshot() : new ArrayList<>();
+    }
+
+    private List<DepartmentStats> queryDepartmentStats(String department) throws SQLException {
+        String sql = "SELECT department, COUNT(*), SUM(salary), MIN(salary), MAX(salary) FROM employees"
+            + (department != null ? " WHERE department = ?" : "") + " GROUP BY department ORDER BY department";
+        List<DepartmentStats> stats = new ArrayList<>();
+        JdbcTimer timer = METRICS.start("departmentStats", sql);
+        try (Connection conn = timer.connected(pool.getConnection());
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (department != null) {
+                pstmt.setString(1, department);
+            }
+            ResultSet rs = timer.executed(pstmt.executeQuery());
+            while (rs.next()) {
+                stats.add(new DepartmentStats(rs.getString(1), rs.getLong(2), rs.getDouble(3), rs.getDouble(4), rs.getDouble(5)));
+            }
+            timer.rows(stats.size());
+        } catch (SQLException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            timer.stop();
+        }
+        return stats;
+    }
+
+    // Read-through lookup by id
+    @Override
+    public Employee getEmployee(int id) {
+        Employee cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = cache.stamp();
+        Employee found = EmployeeRepository.super.getEmployee(id);
+        if (found != null) {
+            cache.putIfCurrent(found, stamp);
+        }
+        return found;
+    }
+
+    @Override
+    public String jdbcStats() {
+        return METRICS.report();
+    }
+
+    @Override
+    public String cacheStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public List<Employee> findEmployees(EmployeeQuery query) {
+        List<Employee> employees = new ArrayList<>();
+        String sql = query.toSql();
+        JdbcTimer timer = METRICS.start("findEmployees", sql);
+        try (Connection conn = timer.connected(pool.getConnection());
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            query.bind(pstmt);
+            ResultSet rs = timer.executed(pstmt.executeQuery());
+            while (rs.next()) {
+                employees.add(new Employee(
+                    rs.getInt("id"),
+                    rs.getString("name"),
+                    rs.getString("department"),
+                    rs.getDouble("salary")
+                ));
+            }
+            timer.rows(employees.size());
+        } catch (SQLException e) {
+            timer.failed(e);
+            e.printStackTrace();
+        } finally {
+            timer.stop();
+        }
+        return employees;
+    }
+
+    // Streams rows from the database straight to disk, so memory stays flat however large the table
+    // is. A filename ending in .gz is gzip-compressed. With shards > 1 the id range is split into
+    // slices, each written to its own file over its own connection in parallel.
+    @Override
+    public void exportToCSV(String filename, int shards) {
+        long start = System.nanoTime();
+        try {
+            long rows = 0;
+            long[] bounds = shards > 1 ? shardBounds(shards) : null;
+            if (bounds == null) {
+                rows = exportRange(Paths.get(filename), null, null);
+            } else {
+                ExecutorService writers = Executors.newFixedThreadPool(Math.min(shards, POOL_SIZE));
+                try {
+                    List<Future<Long>> parts = new ArrayList<>();
+                    for (int i = 0; i < shards; i++) {
+                        Path part = shardPath(filename, i);
+                        long from = bounds[i], to = bounds[i + 1];
+                        parts.add(writers.submit(() -> exportRange(part, from, to)));
+                    }
+                    for (Future<Long> part : parts) {
+                        rows += part.get();
+                    }
+                } finally {
+                    writers.shutdownNow();
+                }
+            }
+            System.out.printf("Exported %d rows to %s in %.2fs%n", rows,
+                bounds == null ? filename : shards + " files like " + shardPath(filename, 0),
+                (System.nanoTime() - start) / 1e9);
+        } catch (SQLException | IOException | ExecutionException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Evenly spaced id boundaries for the shards, null if the table is empty
+    private long[] shardBounds(int shards) throws SQLException {
+        String sql = "SELECT MIN(id), MAX(id) FROM employees";
+        JdbcTimer timer = METRICS.start("shardBounds", sql);
+        try (Connection conn = timer.connected(pool.getConnection());
+             Statement stmt = conn.createStatement();
+             ResultSet rs = timer.executed(stmt.executeQuery(sql))) {
+            timer.rows(1);
+            rs.next();
+            long min = rs.getLong(1);
+            if (rs.wasNull()) {
+                return null;
+            }
+            long span = rs.getLong(2) - min + 1;
+            long[] bounds = new long[shards + 1];
+            for (int i = 0; i <= shards; i++) {
+                bounds[i] = min + span * i / shards;
+            }
+            return bounds;
+        } catch (SQLException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    // employees.csv -> employees-part0.csv, employees.csv.gz -> employees-part0.csv.gz
+    private static Path shardPath(String filename, int shard) {
+        int ext = filename.lastIndexOf(".csv");
+        return ext < 0 ? Paths.get(filename + "-part" + shard)
+            : Paths.get(filename.substring(0, ext) + "-part" + shard + filename.substring(ext));
+    }
+
+    // Writes ids in [from, to), or the whole table when from is null; returns the row count
+    private long exportRange(Path file, Long from, Long to) throws SQLException, IOException {
+        String sql = "SELECT id, name, department, salary FROM employees"
+            + (from != null ? " WHERE id >= ? AND id < ?" : "") + " ORDER BY id";
+        long rows = 0;
+        // Rows stream in while they are written, so the map phase includes the database's send time
+        JdbcTimer timer = METRICS.start("exportRange", sql);
+        try (Connection conn = timer.connected(pool.getConnection());
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J streams a forward-only result row by row instead of buffering it all
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            if (from != null) {
+                pstmt.setLong(1, from);
+                pstmt.setLong(2, to);
+            }
+            try (ResultSet rs = timer.executed(pstmt.executeQuery());
+                 BufferedWriter writer = EmployeeCsv.openWriter(file)) {
+                writer.write(EmployeeCsv.HEADER);
+                writer.newLine();
+                while (rs.next()) {
+                    EmployeeCsv.writeRow(writer, rs.getInt(1), rs.getString(2), rs.getString(3), rs.getDouble(4));
+                    rows++;
+                }
+            }
+            timer.rows(rows);
+        } catch (SQLException | IOException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            timer.stop();
+        }
+        return rows;
+    }
+
+    // Waits for queued writes to be flushed before closing the pool
+    @Override
+    public void close() {
+        WriteBehindQueue queue;
+        synchronized (this) {
+            queue = writeBehind;
+        }
+        if (queue != null) {
+            queue.close();
+        }
+        pool.close();
+    }
+}
+
+// Write-behind mode for EmployeeManager. Mutations are queued and acknowledged with a future; one
+// writer thread drains whatever piled up during the previous flush into a single transaction, on a
+// connection it keeps with its three statements prepared while writes keep coming. A burst of N
+// writes then costs a few batched round trips and one commit rather than N autocommits. A later
+// mutation of a queued id absorbs the earlier one when the outcome is the same, and submitters
+// block while the queue is full. A failed group is retried one mutation at a time, so only the
+// writes the database actually rejects fail.
+class WriteBehindQueue {
+    enum Kind { INSERT, UPDATE, DELETE }
+
+    static final class Mutation {
+        final Kind kind;
+        final int id;
+        final Employee employee;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Mutation(Kind kind, int id, Employee employee) {
+            this.kind = kind;
+            this.id = id;
+            this.employee = employee;
+        }
+
+        // Completes this mutation's future along with one that absorbed it
+        void follow(Mutation other) {
+            other.done.whenComplete((ignored, e) -> {
+                if (e == null) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    // The writer hands its connection back to the pool after this long without work
+    private static final long IDLE_RELEASE_MS = 1000;
+
+    private final EmployeeManager manager;
+    private final int capacity;
+    private final int maxGroup;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // Queued mutations of each id in order, ids in order of their first queued mutation
+    private final LinkedHashMap<Integer, List<Mutation>> pending = new LinkedHashMap<>();
+    private int size;
+    private boolean closed;
+    private final Thread writer;
+    // Only touched by the writer thread
     private Connection conn;
+    private PreparedStatement insert, update, delete;
+
+    WriteBehindQueue(EmployeeManager manager, int capacity, int maxGroup) {
+        this.manager = manager;
+        this.capacity = capacity;
+        this.maxGroup = maxGroup;
+        writer = new Thread(this::run, "employee-write-behind");
+        writer.start();
+    }
+
+    CompletableFuture<Void> submit(Kind kind, int id, Employee employee) {
+        Mutation m = new Mutation(kind, id, employee);
+        lock.lock();
+        try {
+            while (!closed && size >= capacity && !absorbs(pending.get(id), m)) {
+                notFull.await();
+            }
+            if (closed) {
+                m.done.completeExceptionally(new IllegalStateException("Write-behind queue is closed"));
+                return m.done;
+            }
+            List<Mutation> queued = pending.computeIfAbsent(id, k -> new ArrayList<>());
+            if (absorbs(queued, m)) {
+                Mutation last = queued.get(queued.size() - 1);
+                if (last.kind == Kind.DELETE) {
+                    // Updating or deleting a row that is about to be deleted changes nothing
+                    m.follow(last);
+                } else {
+                    // The later update or delete overwrites what the queued update would write
+                    queued.set(queued.size() - 1, m);
+                    last.follow(m);
+                }
+            } else {
+                queued.add(m);
+                size++;
+                notEmpty.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            m.done.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+        return m.done;
+    }
+
+    // Inserts are never merged: whether one fails on a duplicate id depends on the table
+    private static boolean absorbs(List<Mutation> queued, Mutation m) {
+        return queued != null && !queued.isEmpty() && m.kind != Kind.INSERT
+            && queued.get(queued.size() - 1).kind != Kind.INSERT;
+    }
+
+    // Flushes everything still queued, then stops the writer
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            List<Mutation> group;
+            while ((group = take()) != null) {
+                if (group.isEmpty()) {
+                    release();
+                } else {
+                    flush(group);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            release();
+        }
+    }
+
+    // Up to maxGroup mutations, whole ids at a time; empty after an idle spell, null once closed and drained
+    private List<Mutation> take() throws InterruptedException {
+        lock.lock();
+        try {
+            if (pending.isEmpty() && !closed && !notEmpty.await(IDLE_RELEASE_MS, TimeUnit.MILLISECONDS)) {
+                return List.of();
+            }
+            while (pending.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.await();
+            }
+            List<Mutation> group = new ArrayList<>();
+            Iterator<List<Mutation>> ids = pending.values().iterator();
+            while (ids.hasNext() && group.size() < maxGroup) {
+                group.addAll(ids.next());
+                ids.remove();
+            }
+            size -= group.size();
+            notFull.signalAll();
+            return group;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(List<Mutation> group) {
+        manager.enterSummaryGate(this::release);
+        try {
+            if (conn == null) {
+                conn = manager.borrowConnection();
+                insert = conn.prepareStatement(EmployeeManager.INSERT_SQL);
+                update = conn.prepareStatement(EmployeeManager.UPDATE_SQL);
+                delete = conn.prepareStatement(EmployeeManager.DELETE_SQL);
+            }
+            manager.applyGroup(conn, insert, update, delete, group);
+            group.forEach(m -> m.done.complete(null));
+        } catch (SQLException | RuntimeException e) {
+            // Rejected rows leave the connection usable; after anything else retry on a fresh one
+            if (!EmployeeManager.isConstraintViolation(e)) {
+                release();
+            }
+            if (group.size() == 1) {
+                group.get(0).done.completeExceptionally(e);
+            } else {
+                group.forEach(m -> flush(List.of(m)));
+            }
+        } finally {
+            manager.exitSummaryGate();
+        }
+    }
+
+    // Pooled connections outlive their statements, so those are closed explicitly
+    private void release() {
+        if (conn == null) {
+            return;
+        }
+        for (AutoCloseable resource : new AutoCloseable[] {insert, update, delete, conn}) {
+            try {
+                if (resource != null) {
+                    resource.close();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        conn = null;
+        insert = update = delete = null;
+    }
+}
+
+// MySQL-free EmployeeRepository that keeps each column in its own array: int ids, double salaries,
+// and departments dictionary-encoded to int codes. Filters run as tight loops over the primitive
+// columns, so scans stay in cache and need no object per row. Readers share a read lock; a removal
+// moves the last row into the hole.
+class ColumnarEmployeeRepository implements EmployeeRepository {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] ids = new int[1024];
+    private String[] names = new String[1024];
+    private int[] departmentCodes = new int[1024];
+    private double[] salaries = new double[1024];
+    private int size;
+    private final Map<Integer, Integer> rowOf = new HashMap<>();
+    // One code per distinct spelling, so values come back exactly as stored; codes are never reused
+    private final Map<String, Integer> departmentCode = new HashMap<>();
+    private final List<String> departmentNames = new ArrayList<>();
+
+    @Override
+    public void addEmployee(Employee emp) {
+        try {
+            insertBatch(List.of(emp));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Duplicate ids are reported the way MySQL reports them, before any row is stored
+    @Override
+    public void insertBatch(Collection<Employee> employees) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            Set<Integer> batchIds = new HashSet<>();
+            for (Employee emp : employees) {
+                if (rowOf.containsKey(emp.getId()) || !batchIds.add(emp.getId())) {
+                    throw new SQLIntegrityConstraintViolationException(
+                        "Duplicate entry '" + emp.getId() + "' for key 'employees.PRIMARY'", "23000", 1062);
+                }
+            }
+            if (size + employees.size() > ids.length) {
+                int capacity = Math.max(ids.length * 2, size + employees.size());
+                ids = Arrays.copyOf(ids, capacity);
+                names = Arrays.copyOf(names, capacity);
+                departmentCodes = Arrays.copyOf(departmentCodes, capacity);
+                salaries = Arrays.copyOf(salaries, capacity);
+            }
+            for (Employee emp : employees) {
+                ids[size] = emp.getId();
+                store(size, emp);
+                rowOf.put(emp.getId(), size++);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void editEmployee(Employee emp) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowOf.get(emp.getId());
+            if (row != null) {
+                store(row, emp);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-    public EmployeeManager() {
-        initializeDatabase();
+    @Override
+    public void removeEmployee(int id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowOf.remove(id);
+            if (row == null) {
+                return;
+            }
+            int last = --size;
+            if (row != last) {
+                ids[row] = ids[last];
+                names[row] = names[last];
+                departmentCodes[row] = departmentCodes[last];
+                salaries[row] = salaries[last];
+                rowOf.put(ids[row], row);
+            }
+            names[last] = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
-    private void initializeDatabase() {
+    private void store(int row, Employee emp) {
+        names[row] = emp.getName();
+        departmentCodes[row] = departmentCode.computeIfAbsent(emp.getDepartment(), department -> {
+            departmentNames.add(department);
+            return departmentNames.size() - 1;
+        });
+        salaries[row] = emp.getSalary();
+    }
+
+    @Override
+    public List<Employee> findEmployees(EmployeeQuery query) {
+        lock.readLock().lock();
         try {
-            conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-            Statement stmt = conn.createStatement();
-            // Create database and table if not exists
-            stmt.execute("CREATE DATABASE IF NOT EXISTS employees");
-            stmt.execute("USE employees");
-            String sql = "CREATE TABLE IF NOT EXISTS employees (" +
-                "id INTEGER PRIMARY KEY, " +
-                "name VARCHAR(255) NOT NULL, " +
-                "department VARCHAR(255) NOT NULL, " +
-                "salary DOUBLE NOT NULL)";
-            stmt.execute(sql);
-            stmt.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+            int[] hits;
+            int count;
+            if (query.getId() != null) {
+                Integer row = rowOf.get(query.getId());
+                hits = row == null ? new int[0] : new int[] {row};
+                count = matchRows(query, hits, hits.length);
+            } else {
+                hits = new int[size];
+                count = matchRows(query, hits, scan(query, hits));
+            }
+            EmployeeSort sort = query.getSort();
+            if (sort == null) {
+                // Same order as the table's primary key
+                return toEmployees(sortedRows(hits, count, EmployeeSort.ID, count));
+            }
+            return toEmployees(sortedRows(hits, count, sort, query.getLimit()));
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
-    public void addEmployee(Employee emp) {
-        String sql = "INSERT INTO employees (id, name, department, salary) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, emp.getId());
-            pstmt.setString(2, emp.getName());
-            pstmt.setString(3, emp.getDepartment());
-            pstmt.setDouble(4, emp.getSalary());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Writes the rows passing the salary and department filters to the front of hits and returns
+    // how many there are. Every row is stored and the count advanced by the predicate, so the loop
+    // has no data-dependent branch.
+    private int scan(EmployeeQuery query, int[] hits) {
+        boolean[] wanted = departmentMask(query.getDepartment());
+        double min = query.getMinSalary();
+        double max = query.getMaxSalary();
+        int[] departmentCodes = this.departmentCodes;
+        double[] salaries = this.salaries;
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            double salary = salaries[row];
+            hits[count] = row;
+            count += (salary >= min & salary <= max & wanted[departmentCodes[row]]) ? 1 : 0;
         }
+        return count;
     }
 
-    public void editEmployee(Employee emp) {
-        String sql = "UPDATE employees SET name = ?, department = ?, salary = ? WHERE id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, emp.getName());
-            pstmt.setString(2, emp.getDepartment());
-            pstmt.setDouble(3, emp.getSalary());
-            pstmt.setInt(4, emp.getId());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Which department codes a filter accepts, compared case-insensitively like the MySQL collation
+    private boolean[] departmentMask(String department) {
+        boolean[] wanted = new boolean[departmentNames.size()];
+        for (int code = 0; code < wanted.length; code++) {
+            wanted[code] = department == null || departmentNames.get(code).equalsIgnoreCase(department);
         }
+        return wanted;
     }
 
-    public void removeEmployee(int id) {
-        String sql = "DELETE FROM employees WHERE id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+    // Checks the whole query against the first count hits, keeping the matches in place. Only sees
+    // rows the scan or the id lookup already narrowed down.
+    private int matchRows(EmployeeQuery query, int[] hits, int count) {
+        String prefix = query.getNamePrefix();
+        Employee after = query.getAfter();
+        String department = query.getDepartment();
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = hits[i];
+            if (department != null && !departmentNames.get(departmentCodes[row]).equalsIgnoreCase(department)) {
+                continue;
+            }
+            if (salaries[row] < query.getMinSalary() || salaries[row] > query.getMaxSalary()) {
+                continue;
+            }
+            if (prefix != null && !names[row].regionMatches(true, 0, prefix, 0, prefix.length())) {
+                continue;
+            }
+            if (after != null && compareToEmployee(query.getSort(), row, after) <= 0) {
+                continue;
+            }
+            hits[kept++] = row;
         }
+        return kept;
     }
 
-    public List<Employee> getAllEmployees() {
-        List<Employee> employees = new ArrayList<>();
-        String sql = "SELECT * FROM employees";
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                employees.add(new Employee(
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getString("department"),
-                    rs.getDouble("salary")
-                ));
+    // The first limit of the given rows in sort order, via a bounded heap when only a page is wanted
+    private int[] sortedRows(int[] hits, int count, EmployeeSort sort, int limit) {
+        Comparator<Integer> order = (a, b) -> compareRows(sort, a, b);
+        if (limit >= count) {
+            Integer[] rows = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = hits[i];
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            Arrays.sort(rows, order);
+            return Arrays.stream(rows).mapToInt(Integer::intValue).toArray();
         }
-        return employees;
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, order.reversed());
+        for (int i = 0; i < count; i++) {
+            top.add(hits[i]);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        int[] rows = new int[top.size()];
+        for (int i = rows.length - 1; i >= 0; i--) {
+            rows[i] = top.poll();
+        }
+        return rows;
     }
 
-    public List<Employee> filterByDepartment(String department) {
-        return getAllEmployees().stream()
-            .filter(emp -> emp.getDepartment().equalsIgnoreCase(department))
-            .collect(Collectors.toList());
+    private int compareRows(EmployeeSort sort, int a, int b) {
+        int c = switch (sort) {
+            case ID -> 0;
+            case SALARY -> Double.compare(salaries[a], salaries[b]);
+            case NAME -> String.CASE_INSENSITIVE_ORDER.compare(names[a], names[b]);
+        };
+        return c != 0 ? c : Integer.compare(ids[a], ids[b]);
     }
 
-    public List<Employee> filterBySalaryRange(double min, double max) {
-        return getAllEmployees().stream()
-            .filter(emp -> emp.getSalary() >= min && emp.getSalary() <= max)
-            .collect(Collectors.toList());
+    private int compareToEmployee(EmployeeSort sort, int row, Employee emp) {
+        int c = switch (sort) {
+            case ID -> 0;
+            case SALARY -> Double.compare(salaries[row], emp.getSalary());
+            case NAME -> String.CASE_INSENSITIVE_ORDER.compare(names[row], emp.getName());
+        };
+        return c != 0 ? c : Integer.compare(ids[row], emp.getId());
     }
 
-    public void exportToCSV(String filename) {
-        List<Employee> employees = getAllEmployees();
-        try (PrintWriter pw = new PrintWriter(new File(filename))) {
-            pw.println("ID,Name,Department,Salary");
-            for (Employee emp : employees) {
-                pw.printf("%d,\"%s\",\"%s\",%.2f%n",
-                    emp.getId(), emp.getName(), emp.getDepartment(), emp.getSalary());
+    private List<Employee> toEmployees(int[] rows) {
+        List<Employee> employees = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            employees.add(new Employee(ids[row], names[row], departmentNames.get(departmentCodes[row]), salaries[row]));
+        }
+        return employees;
+    }
+
+    // One pass accumulating into arrays indexed by department code; spellings differing only in case
+    // are then merged, as GROUP BY does under the MySQL collation
+    @Override
+    public List<DepartmentStats> getDepartmentStats() {
+        lock.readLock().lock();
+        try {
+            int departments = departmentNames.size();
+            long[] counts = new long[departments];
+            double[] totals = new double[departments];
+            double[] mins = new double[departments];
+            double[] maxes = new double[departments];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxes, Double.NEGATIVE_INFINITY);
+            for (int row = 0; row < size; row++) {
+                int code = departmentCodes[row];
+                double salary = salaries[row];
+                counts[code]++;
+                totals[code] += salary;
+                mins[code] = Math.min(mins[code], salary);
+                maxes[code] = Math.max(maxes[code], salary);
+            }
+            Map<String, DepartmentStats> stats = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int code = 0; code < departments; code++) {
+                if (counts[code] > 0) {
+                    DepartmentStats merged = stats.get(departmentNames.get(code));
+                    stats.put(departmentNames.get(code), merged == null
+                        ? new DepartmentStats(departmentNames.get(code), counts[code], totals[code], mins[code], maxes[code])
+                        : new DepartmentStats(merged.getDepartment(), merged.getCount() + counts[code],
+                            merged.getTotal() + totals[code], Math.min(merged.getMin(), mins[code]), Math.max(merged.getMax(), maxes[code])));
+                }
+            }
+            return new ArrayList<>(stats.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Everything is in memory already, so a single file in id order regardless of shards
+    @Override
+    public void exportToCSV(String filename, int shards) {
+        lock.readLock().lock();
+        try (BufferedWriter writer = EmployeeCsv.openWriter(Paths.get(filename))) {
+            int[] all = new int[size];
+            for (int row = 0; row < size; row++) {
+                all[row] = row;
             }
-            System.out.println("Exported to " + filename);
-        } catch (FileNotFoundException e) {
+            writer.write(EmployeeCsv.HEADER);
+            writer.newLine();
+            for (int row : sortedRows(all, size, EmployeeSort.ID, size)) {
+                EmployeeCsv.writeRow(writer, ids[row], names[row], departmentNames.get(departmentCodes[row]), salaries[row]);
+            }
+            System.out.println("Exported " + size + " employees to " + filename);
+        } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
+
+// Bulk CSV import in the shape exportToCSV writes. The calling thread reads and parses while a
+// few writer threads insert numbered batches, each in its own transaction. Committed batch numbers
+// go to a progress file next to the CSV, so rerunning after a failed batch skips everything that
+// already made it in and retries from there.
+class EmployeeImporter {
+    private static final Batch END = new Batch(-1, List.of());
+
+    private static class Batch {
+        final long number;
+        final List<Employee> rows;
+
+        Batch(long number, List<Employee> rows) {
+            this.number = number;
+            this.rows = rows;
+        }
+    }
+
+    static class Report {
+        long rows;
+        long imported;
+        long resumed;
+        long rejected;
+        long failedBatches;
+        double seconds;
+
+        @Override
+        public String toString() {
+            return String.format("%d rows in %.2fs (%.0f rows/s): %d imported, %d already imported, %d rejected, "
+                + "%d failed batches", rows, seconds, rows / Math.max(seconds, 1e-9), imported, resumed,
+                rejected, failedBatches);
+        }
+    }
+
+    public static Report importFile(EmployeeRepository manager, Path csv, int batchSize, int writers)
+            throws IOException, InterruptedException {
+        Path progressFile = csv.resolveSibling(csv.getFileName() + ".progress");
+        boolean resuming = Files.exists(progressFile);
+        Set<Long> committed = readProgress(progressFile, batchSize);
+        Report report = new Report();
+        AtomicLong imported = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(writers * 2);
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        long start = System.nanoTime();
+        try (BufferedWriter progress = Files.newBufferedWriter(progressFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (!resuming) {
+                progress.write("batchSize=" + batchSize);
+                progress.newLine();
+                progress.flush();
+            }
+            for (int i = 0; i < writers; i++) {
+                pool.execute(() -> {
+                    try {
+                        Batch batch;
+                        while ((batch = queue.take()) != END) {
+                            if (failed.get() > 0) {
+                                continue;
+                            }
+                            try {
+                                manager.insertBatch(batch.rows);
+                                imported.addAndGet(batch.rows.size());
+                                synchronized (progress) {
+                                    progress.write(Long.toString(batch.number));
+                                    progress.newLine();
+                                    progress.flush();
+                                }
+                            } catch (SQLException | IOException e) {
+                                // Stop feeding new batches; the ones in flight elsewhere still commit
+                                failed.incrementAndGet();
+                                System.out.println("Batch " + batch.number + " failed: " + e.getMessage());
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+                String first = reader.readLine();
+                // Skip the header if there is one, otherwise the first line is already data
+                String firstData = first != null && first.startsWith("ID,") ? reader.readLine() : first;
+                report.rows = readBatches(firstData, reader, batchSize, committed, queue, failed, report);
+            } finally {
+                for (int i = 0; i < writers; i++) {
+                    queue.put(END);
+                }
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        }
+        report.imported = imported.get();
+        report.failedBatches = failed.get();
+        report.seconds = (System.nanoTime() - start) / 1e9;
+        if (report.failedBatches == 0) {
+            Files.deleteIfExists(progressFile);
+        }
+        return report;
+    }
+
+    private static long readBatches(String line, BufferedReader reader, int batchSize, Set<Long> committed,
+                                    BlockingQueue<Batch> queue, AtomicLong failed, Report report)
+            throws IOException, InterruptedException {
+        long rows = 0;
+        long number = 0;
+        List<Employee> batch = new ArrayList<>(batchSize);
+        // Batches are cut by data line, rejected rows included, so numbering is the same on every run
+        for (; line != null && failed.get() == 0; line = reader.readLine()) {
+            if (line.isBlank()) {
+                continue;
+            }
+            rows++;
+            Employee emp = parse(line);
+            if (emp == null) {
+                report.rejected++;
+            } else {
+                batch.add(emp);
+            }
+            if (rows % batchSize == 0) {
+                submit(new Batch(number++, batch), committed, queue, report);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (rows % batchSize != 0 && failed.get() == 0) {
+            submit(new Batch(number, batch), committed, queue, report);
+        }
+        return rows;
+    }
+
+    private static void submit(Batch batch, Set<Long> committed, BlockingQueue<Batch> queue, Report report)
+            throws InterruptedException {
+        if (committed.contains(batch.number)) {
+            report.resumed += batch.rows.size();
+        } else if (!batch.rows.isEmpty()) {
+            queue.put(batch);
+        }
+    }
+
+    // Batch numbers only line up with the same batch size, so a progress file written with another size is an error
+    private static Set<Long> readProgress(Path progressFile, int batchSize) throws IOException {
+        Set<Long> committed = new HashSet<>();
+        if (!Files.exists(progressFile)) {
+            return committed;
+        }
+        List<String> lines = Files.readAllLines(progressFile, StandardCharsets.UTF_8);
+        if (!lines.isEmpty() && !lines.get(0).equals("batchSize=" + batchSize)) {
+            throw new IOException(progressFile + " was written with " + lines.get(0) + ", resume with the same batch size");
+        }
+        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            if (!line.isBlank()) {
+                committed.add(Long.parseLong(line.trim()));
+            }
+        }
+        return committed;
+    }
+
+    // id,"name","department",salary with optional quotes; "" inside quotes is a literal quote
+    static Employee parse(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        if (fields.size() != 4 || quoted) {
+            return null;
+        }
+        try {
+            return new Employee(Integer.parseInt(fields.get(0).trim()), fields.get(1), fields.get(2),
+                Double.parseDouble(fields.get(3).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
+
+class EmployeeJson {
+    public static String employee(Employee emp) {
+        return "{\"id\":" + emp.getId()
+            + ",\"name\":" + quote(emp.getName())
+            + ",\"department\":" + quote(emp.getDepartment())
+            + ",\"salary\":" + emp.getSalary() + "}";
+    }
+
+    public static String employees(Collection<Employee> employees) {
+        StringBuilder sb = new StringBuilder(employees.size() * 80 + 2).append('[');
+        for (Employee emp : employees) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(employee(emp));
+        }
+        return sb.append(']').toString();
+    }
+
+    public static String departmentStats(Collection<DepartmentStats> stats) {
+        StringBuilder sb = new StringBuilder("[");
+        for (DepartmentStats dept : stats) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"department\":").append(quote(dept.getDepartment()))
+                .append(",\"count\":").append(dept.getCount())
+                .append(",\"total\":").append(dept.getTotal())
+                .append(",\"min\":").append(dept.getMin())
+                .append(",\"max\":").append(dept.getMax())
+                .append(",\"average\":").append(dept.getAverage()).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    public static String error(String message) {
+        return "{\"error\":" + quote(message != null ? message : "") + "}";
+    }
+
+    // Control characters go out as four-digit unicode escapes, which every JSON reader accepts
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // {"key": value, ...} one level deep, which is all a request body holds. Strings are unescaped,
+    // numbers are kept as written for toEmployee to parse
+    static Map<String, String> parseObject(String json) {
+        String body = json.strip();
+        if (!body.startsWith("{") || !body.endsWith("}")) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        Map<String, String> fields = new HashMap<>();
+        String key = null;
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        int end = body.length() - 1;
+        for (int i = 1; i < end; i++) {
+            char c = body.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                } else if (c == '\\' && i + 1 < end) {
+                    char escaped = body.charAt(++i);
+                    if (escaped == 'u' && i + 4 < end) {
+                        token.append((char) Integer.parseInt(body.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    } else {
+                        token.append(escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped == 't' ? '\t' : escaped);
+                    }
+                } else {
+                    token.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ':' && key == null) {
+                key = token.toString();
+                token.setLength(0);
+            } else if (c == ',') {
+                if (key == null) {
+                    throw new IllegalArgumentException("Expected \"key\": value before ',' at " + i);
+                }
+                fields.put(key, token.toString());
+                key = null;
+                token.setLength(0);
+            } else if (!Character.isWhitespace(c)) {
+                token.append(c);
+            }
         }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated string");
+        }
+        if (key != null) {
+            fields.put(key, token.toString());
+        } else if (token.length() > 0) {
+            throw new IllegalArgumentException("Expected \"key\": value at end of object");
+        }
+        return fields;
+    }
+}
+
+// Headless HTTP front end over a shared EmployeeRepository, one virtual thread per request where the
+// runtime has them. The repositories are already safe to share: EmployeeManager bounds database
+// concurrency with its connection pool, so requests beyond DB_POOL_SIZE queue for a connection.
+//   GET    /employees?department=..&namePrefix=..&minSalary=..&maxSalary=..   search (all without filters),
+//          &sort=id|salary|name&limit=N&after=[{salary|name},]{id}           always one keyset page: by id,
+//                                                    100 rows unless limit says otherwise, at most 1000
+//   GET    /employees/{id}                           fetch one employee
+//   POST   /employees                                add {"id","name","department","salary"}
+//   PUT    /employees/{id}                           replace {"name","department","salary"}
+//   DELETE /employees/{id}                           remove
+//   GET    /departments                              per-department salary statistics
+//   GET    /metrics                                  cache and JDBC statistics as text
+class EmployeeServer {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final EmployeeRepository repository;
+    private final HttpServer server;
+    private final ExecutorService workers = requestExecutor();
+
+    public EmployeeServer(EmployeeRepository repository, int port) throws IOException {
+        this.repository = repository;
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/employees", this::handle);
+        server.createContext("/departments", this::handleDepartments);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(workers);
     }
 
-    public void closeConnection() {
+    // Looked up reflectively so the file still compiles and runs on Java 17. There the fallback is two
+    // platform threads per pooled connection: one running on it and one waiting to take it next, so the
+    // connections never idle between requests while threads blocked in the pool stay few.
+    private static ExecutorService requestExecutor() {
         try {
-            if (conn != null && !conn.isClosed()) {
-                conn.close();
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(EmployeeManager.POOL_SIZE * 2);
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Employee server listening on port " + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(1);
+        workers.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // Bad input is answered inside the try, while the exchange is still open
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, EmployeeJson.error(e.getMessage()));
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        // parts: "", "employees", [id]
+        String method = exchange.getRequestMethod();
+        Integer id = parts.length > 2 ? Integer.valueOf(parts[2]) : null;
+        if (parts.length > 3) {
+            send(exchange, 404, EmployeeJson.error("Unknown path"));
+        } else if (id == null && method.equals("GET")) {
+            search(exchange);
+        } else if (id == null && method.equals("POST")) {
+            addEmployee(exchange);
+        } else if (id != null && method.equals("GET")) {
+            Employee emp = repository.getEmployee(id);
+            send(exchange, emp != null ? 200 : 404, emp != null ? EmployeeJson.employee(emp) : EmployeeJson.error("Employee not found"));
+        } else if (id != null && method.equals("PUT")) {
+            editEmployee(exchange, id);
+        } else if (id != null && method.equals("DELETE")) {
+            if (repository.getEmployee(id) == null) {
+                send(exchange, 404, EmployeeJson.error("Employee not found"));
+            } else {
+                repository.removeEmployee(id);
+                send(exchange, 200, "{}");
             }
+        } else {
+            send(exchange, 405, EmployeeJson.error("Unsupported request"));
+        }
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        Map<String, String> params = queryParams(exchange.getRequestURI().getRawQuery());
+        EmployeeQuery query = new EmployeeQuery();
+        if (params.containsKey("department")) {
+            query.department(params.get("department"));
+        }
+        if (params.containsKey("namePrefix")) {
+            query.namePrefix(params.get("namePrefix"));
+        }
+        if (params.containsKey("minSalary")) {
+            query.minSalary(Double.parseDouble(params.get("minSalary")));
+        }
+        if (params.containsKey("maxSalary")) {
+            query.maxSalary(Double.parseDouble(params.get("maxSalary")));
+        }
+        // Unbounded listings would hand the whole table to one response, so every search is a page
+        EmployeeSort sort = EmployeeSort.valueOf(params.getOrDefault("sort", "id").toUpperCase());
+        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : DEFAULT_PAGE_SIZE;
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+        Employee after = params.containsKey("after") ? cursor(sort, params.get("after")) : null;
+        query = query.page(sort, after, Math.min(limit, MAX_PAGE_SIZE));
+        send(exchange, 200, EmployeeJson.employees(repository.findEmployees(query)));
+    }
+
+    // The cursor carries the sort key and id of the previous page's last row, so the next page does
+    // not depend on that row still existing or being unchanged. Names may contain commas, ids can't.
+    private static Employee cursor(EmployeeSort sort, String after) {
+        if (sort == EmployeeSort.ID) {
+            return new Employee(Integer.parseInt(after), "", "", 0);
+        }
+        int comma = after.lastIndexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("after must be {" + sort.column + "},{id}");
+        }
+        int id = Integer.parseInt(after.substring(comma + 1));
+        String key = after.substring(0, comma);
+        return sort == EmployeeSort.SALARY
+            ? new Employee(id, "", "", Double.parseDouble(key))
+            : new Employee(id, key, "", 0);
+    }
+
+    // Goes through insertBatch so a duplicate id comes back as 409 rather than a server-side log line
+    private void addEmployee(HttpExchange exchange) throws IOException {
+        Map<String, String> fields = readObject(exchange);
+        if (!fields.containsKey("id")) {
+            send(exchange, 400, EmployeeJson.error("Missing id"));
+            return;
+        }
+        Employee emp = toEmployee(Integer.parseInt(fields.get("id")), fields);
+        try {
+            repository.insertBatch(List.of(emp));
+            send(exchange, 201, EmployeeJson.employee(emp));
         } catch (SQLException e) {
-            e.printStackTrace();
+            if (EmployeeManager.isConstraintViolation(e)) {
+                send(exchange, 409, EmployeeJson.error("Employee ID already exists"));
+            } else {
+                send(exchange, 500, EmployeeJson.error(e.getMessage()));
+            }
+        }
+    }
+
+    private void editEmployee(HttpExchange exchange, int id) throws IOException {
+        Employee emp = toEmployee(id, readObject(exchange));
+        if (repository.getEmployee(id) == null) {
+            send(exchange, 404, EmployeeJson.error("Employee not found"));
+            return;
+        }
+        repository.editEmployee(emp);
+        send(exchange, 200, EmployeeJson.employee(emp));
+    }
+
+    private void handleDepartments(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, 200, EmployeeJson.departmentStats(repository.getDepartmentSummary()));
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] bytes = ("Cache: " + repository.cacheStats() + "\n" + repository.jdbcStats() + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private static Map<String, String> readObject(HttpExchange exchange) throws IOException {
+        return EmployeeJson.parseObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private static Employee toEmployee(int id, Map<String, String> fields) {
+        String name = fields.get("name");
+        String department = fields.get("department");
+        String salary = fields.get("salary");
+        if (name == null || department == null || salary == null) {
+            throw new IllegalArgumentException("name, department and salary are required");
+        }
+        return new Employee(id, name, department, Double.parseDouble(salary));
+    }
+
+    private static Map<String, String> queryParams(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
+
+// Closed-loop load generator for EmployeeServer. Every client is a pool thread issuing requests
+// back to back; the run steps through increasing client counts so the point where throughput stops
+// growing and tail latency takes off is visible in one report. Seeded rows use ids from SEED_BASE up
+// and are the only ones it edits, so it can be pointed at a database holding real data.
+class EmployeeLoadGenerator {
+    private static final int SEED_BASE = 900_000_000;
+    private static final int SEED_EMPLOYEES = 10_000;
+    private static final String[] DEPARTMENTS = {"Engineering", "Sales", "Marketing", "Finance", "Support", "Legal", "Operations", "HR"};
+
+    public static void run(String baseUrl, int[] clientCounts, int seconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+        seed(client, baseUrl);
+        System.out.printf("%8s %10s %10s %10s %10s %10s %8s%n", "clients", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        for (int clients : clientCounts) {
+            step(client, baseUrl, clients, seconds);
+        }
+    }
+
+    private static void step(HttpClient client, String baseUrl, int clients, int seconds) throws InterruptedException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clientsPool = Executors.newFixedThreadPool(clients);
+        try {
+            for (int c = 0; c < clients; c++) {
+                clientsPool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = nextRequest(baseUrl, random);
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        latencies.record(System.nanoTime() - sent);
+                    }
+                });
+            }
+        } finally {
+            clientsPool.shutdown();
+            clientsPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%8d %10.0f %10.2f %10.2f %10.2f %10.2f %8d%n", clients, latencies.count() / elapsed,
+            latencies.percentile(50) / 1e6, latencies.percentile(99) / 1e6, latencies.percentile(99.9) / 1e6,
+            latencies.max() / 1e6, errors.get());
+    }
+
+    // Rows left over from an earlier run answer 409 and are simply reused
+    private static void seed(HttpClient client, String baseUrl) throws InterruptedException {
+        int writers = 16;
+        ExecutorService seeders = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int first = w;
+                done.add(seeders.submit(() -> {
+                    for (int i = first; i < SEED_EMPLOYEES; i += writers) {
+                        String body = "{\"id\":" + (SEED_BASE + i) + ",\"name\":\"Load Test " + i
+                            + "\",\"department\":\"" + DEPARTMENTS[i % DEPARTMENTS.length]
+                            + "\",\"salary\":" + (30_000 + i % 1000 * 100) + "}";
+                        client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/employees"))
+                            .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.discarding());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : done) {
+                writer.get();
+            }
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException("Cannot reach " + baseUrl,
+                e.getCause() instanceof IOException io ? io : new IOException(e.getCause()));
+        } finally {
+            seeders.shutdownNow();
+        }
+    }
+
+    // 60% lookup by id, 20% department page by salary, 15% edit, 5% department statistics
+    private static HttpRequest nextRequest(String baseUrl, ThreadLocalRandom random) {
+        int roll = random.nextInt(100);
+        int i = random.nextInt(SEED_EMPLOYEES);
+        if (roll < 60) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/employees/" + (SEED_BASE + i))).GET().build();
+        } else if (roll < 80) {
+            String department = DEPARTMENTS[random.nextInt(DEPARTMENTS.length)];
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/employees?sort=salary&limit=20&department="
+                + URLEncoder.encode(department, StandardCharsets.UTF_8))).GET().build();
+        } else if (roll < 95) {
+            String body = "{\"name\":\"Load Test " + i + "\",\"department\":\"" + DEPARTMENTS[i % DEPARTMENTS.length]
+                + "\",\"salary\":" + (30_000 + random.nextInt(100_000)) + "}";
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/employees/" + (SEED_BASE + i)))
+                .PUT(HttpRequest.BodyPublishers.ofString(body)).build();
         }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/departments")).GET().build();
     }
 }
 
 public class EmployeeManagementSystem {
-    private static EmployeeManager manager = new EmployeeManager();
+    private static EmployeeRepository manager;
     private static Scanner scanner = new Scanner(System.in);
+    private static final int PAGE_SIZE = 20;
+
+    // EMPLOYEE_STORE=memory runs against the in-memory columnar store, with no MySQL needed
+    private static EmployeeRepository openRepository() {
+        return "memory".equalsIgnoreCase(System.getenv("EMPLOYEE_STORE")) ? new ColumnarEmployeeRepository() : new EmployeeManager();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length >= 1 && args[0].equals("--loadgen")) {
+            String url = args.length > 1 ? args[1] : "http://localhost:8080";
+            int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            int[] clients = args.length > 3
+                ? Arrays.stream(args[3].split(",")).mapToInt(count -> Integer.parseInt(count.trim())).toArray()
+                : new int[] {1, 4, 16, 64, 256};
+            EmployeeLoadGenerator.run(url, clients, seconds);
+            return;
+        }
+        manager = openRepository();
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            EmployeeServer server = new EmployeeServer(manager, args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                manager.close();
+            }));
+            server.start();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(manager::close));
 
-    public static void main(String[] args) {
-        Runtime.getRuntime().addShutdownHook(new Thread(manager::closeConnection));
-        
         while (true) {
             displayMenu();
             int choice = getIntInput("Enter your choice: ");
@@ -174,9 +2823,15 @@ public class EmployeeManagementSystem {
                 case 5 -> filterByDepartment();
                 case 6 -> filterBySalaryRange();
                 case 7 -> exportToCSV();
-                case 8 -> {
+                case 8 -> searchEmployees();
+                case 9 -> importFromCSV();
+                case 10 -> viewEmployee();
+                case 11 -> System.out.println("Cache: " + manager.cacheStats());
+                case 12 -> manager.getDepartmentSummary().forEach(System.out::println);
+                case 13 -> System.out.println(manager.jdbcStats());
+                case 14 -> {
                     System.out.println("Exiting...");
-                    manager.closeConnection();
+                    manager.close();
                     System.exit(0);
                 }
                 default -> System.out.println("Invalid choice. Try again.");
@@ -193,7 +2848,13 @@ public class EmployeeManagementSystem {
         System.out.println("5. Filter by Department");
         System.out.println("6. Filter by Salary Range");
         System.out.println("7. Export to CSV");
-        System.out.println("8. Exit");
+        System.out.println("8. Search Employees");
+        System.out.println("9. Import from CSV");
+        System.out.println("10. View Employee");
+        System.out.println("11. Cache Statistics");
+        System.out.println("12. Department Statistics");
+        System.out.println("13. JDBC Statistics");
+        System.out.println("14. Exit");
     }
 
     private static void addEmployee() {
@@ -220,8 +2881,26 @@ public class EmployeeManagementSystem {
         System.out.println("Employee removed.");
     }
 
+    // Pages through the table instead of printing it all at once
     private static void listAllEmployees() {
-        manager.getAllEmployees().forEach(System.out::println);
+        String sortBy = getStringInput("Sort by id, salary or name (blank for id): ").trim().toUpperCase();
+        EmployeeSort sort = EmployeeSort.ID;
+        if (!sortBy.isEmpty()) {
+            try {
+                sort = EmployeeSort.valueOf(sortBy);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown sort, using id.");
+            }
+        }
+        Iterator<Employee> rows = manager.streamEmployees(new EmployeeQuery(), sort, PAGE_SIZE).iterator();
+        while (rows.hasNext()) {
+            for (int i = 0; i < PAGE_SIZE && rows.hasNext(); i++) {
+                System.out.println(rows.next());
+            }
+            if (rows.hasNext() && getStringInput("-- Enter for more, q to stop: ").trim().equalsIgnoreCase("q")) {
+                break;
+            }
+        }
     }
 
     private static void filterByDepartment() {
@@ -235,9 +2914,50 @@ public class EmployeeManagementSystem {
         manager.filterBySalaryRange(min, max).forEach(System.out::println);
     }
 
+    // Any combination of filters; blank answers are skipped
+    private static void searchEmployees() {
+        EmployeeQuery query = new EmployeeQuery();
+        String dept = getStringInput("Department (blank for any): ").trim();
+        if (!dept.isEmpty()) {
+            query.department(dept);
+        }
+        String prefix = getStringInput("Name starts with (blank for any): ").trim();
+        if (!prefix.isEmpty()) {
+            query.namePrefix(prefix);
+        }
+        Double min = getOptionalDoubleInput("Minimum salary (blank for none): ");
+        if (min != null) {
+            query.minSalary(min);
+        }
+        Double max = getOptionalDoubleInput("Maximum salary (blank for none): ");
+        if (max != null) {
+            query.maxSalary(max);
+        }
+        manager.findEmployees(query).forEach(System.out::println);
+    }
+
+    private static void viewEmployee() {
+        int id = getIntInput("Enter ID: ");
+        Employee emp = manager.getEmployee(id);
+        System.out.println(emp != null ? emp : "Employee not found.");
+    }
+
     private static void exportToCSV() {
+        String filename = getStringInput("Enter CSV filename (.gz to compress): ");
+        Integer shards = getOptionalIntInput("Number of parallel files (blank for 1): ");
+        manager.exportToCSV(filename, shards == null ? 1 : shards);
+    }
+
+    private static void importFromCSV() {
         String filename = getStringInput("Enter CSV filename: ");
-        manager.exportToCSV(filename);
+        int writers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        try {
+            System.out.println(EmployeeImporter.importFile(manager, Paths.get(filename), EmployeeManager.BATCH_SIZE, writers));
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private static int getIntInput(String prompt) {
@@ -262,6 +2982,34 @@ public class EmployeeManagementSystem {
         return value;
     }
 
+    private static Integer getOptionalIntInput(String prompt) {
+        while (true) {
+            String line = getStringInput(prompt).trim();
+            if (line.isEmpty()) {
+                return null;
+            }
+            try {
+                return Integer.parseInt(line);
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid input. ");
+            }
+        }
+    }
+
+    private static Double getOptionalDoubleInput(String prompt) {
+        while (true) {
+            String line = getStringInput(prompt).trim();
+            if (line.isEmpty()) {
+                return null;
+            }
+            try {
+                return Double.parseDouble(line);
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid input. ");
+            }
+        }
+    }
+
     private static String getStringInput(String prompt) {
         System.out.print(prompt);
         return scanner.nextLine();
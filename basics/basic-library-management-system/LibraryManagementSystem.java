@@ -1,15 +1,26 @@
 import javax.swing.JFrame;
 import javax.swing.JPanel;
-import javax.swing.JTextArea;
+import javax.swing.JTable;
+import javax.swing.JFileChooser;
 import javax.swing.JTextField;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JComboBox;
 import javax.swing.JScrollPane;
 import javax.swing.JOptionPane;
+import javax.swing.JPopupMenu;
+import javax.swing.JMenuItem;
 import javax.swing.BorderFactory;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.ListSelectionModel;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import java.awt.BorderLayout;
+import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
@@ -17,109 +28,3016 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.FileOutputStream;
-import java.io.FileInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectInputStream;
+import java.io.BufferedReader;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.DataOutputStream;
+import java.io.DataInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.Serializable;
-import java.io.FileNotFoundException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Objects;
 import java.util.List;  // Explicitly import java.util.List only
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+// Thread-safe string <-> int dictionary. Values that repeat across the catalog (authors, genres)
+// are stored once and books keep only the int code.
+class StringDictionary {
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private volatile String[] lowerValues = new String[64];
+    private volatile int size;
+
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                lowerValues = Arrays.copyOf(lowerValues, size * 2);
+            }
+            values[size] = value;
+            lowerValues[size] = value.toLowerCase();
+            code = size;
+            size = code + 1;
+            // Published last, so any thread that sees the code also sees the value
+            codes.put(value, code);
+            return code;
+        }
+    }
+
+    public String decode(int code) {
+        return values[code];
+    }
+
+    // Code of an already known value, or -1; never adds an entry
+    public int codeOf(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    // Codes of every value containing the lowercase needle; scans distinct values, not books
+    public BitSet matching(String lowerNeedle) {
+        int n = size;
+        String[] lower = lowerValues;
+        BitSet matches = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            if (lower[i].contains(lowerNeedle)) {
+                matches.set(i);
+            }
+        }
+        return matches;
+    }
+}
+
+// Book class to represent book data
+class Book implements Serializable {
+    private static final long serialVersionUID = 1L;
+    // Keeps the pre-dictionary serialized form so legacy library.dat files still load
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", String.class),
+        new ObjectStreamField("title", String.class),
+        new ObjectStreamField("author", String.class),
+        new ObjectStreamField("genre", String.class),
+        new ObjectStreamField("isBorrowed", boolean.class)
+    };
+    static final StringDictionary AUTHORS = new StringDictionary();
+    static final StringDictionary GENRES = new StringDictionary();
+    private String id;
+    private String title;
+    private int authorCode;
+    private int genreCode;
+    // Written under the Library's per-id lock, read lock-free by searches and the UI
+    private volatile boolean isBorrowed;
+    private volatile int borrowCount;
+
+    public Book(String id, String title, String author, String genre) {
+        this.id = id;
+        this.title = title;
+        this.authorCode = AUTHORS.encode(author);
+        this.genreCode = GENRES.encode(genre);
+        this.isBorrowed = false;
+    }
+
+    public String getId() { return id; }
+    public String getTitle() { return title; }
+    public String getAuthor() { return AUTHORS.decode(authorCode); }
+    public String getGenre() { return GENRES.decode(genreCode); }
+    public int getAuthorCode() { return authorCode; }
+    public int getGenreCode() { return genreCode; }
+    public boolean isBorrowed() { return isBorrowed; }
+    public void setBorrowed(boolean borrowed) { this.isBorrowed = borrowed; }
+    public int getBorrowCount() { return borrowCount; }
+    public void setBorrowCount(int borrowCount) { this.borrowCount = borrowCount; }
+
+    @Override
+    public String toString() {
+        return String.format("ID: %s | Title: %s | Author: %s | Genre: %s | %s",
+            id, title, getAuthor(), getGenre(), isBorrowed ? "Borrowed" : "Available");
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("title", title);
+        fields.put("author", getAuthor());
+        fields.put("genre", getGenre());
+        fields.put("isBorrowed", isBorrowed);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = (String) fields.get("id", null);
+        title = (String) fields.get("title", null);
+        authorCode = AUTHORS.encode((String) fields.get("author", ""));
+        genreCode = GENRES.encode((String) fields.get("genre", ""));
+        isBorrowed = fields.get("isBorrowed", false);
+    }
+}
+
+// Trigram index over a single searchable field, maps every 3-char slice to the ids containing it
+class TrigramIndex {
+    private static final int GRAM = 3;
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+    public void add(String id, String text) {
+        for (String gram : grams(text.toLowerCase())) {
+            postings.compute(gram, (k, ids) -> {
+                Set<String> set = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                set.add(id);
+                return set;
+            });
+        }
+    }
+
+    // Batch variant for index builds: postings are grouped per trigram first so each one is touched once
+    public <T> void addAll(Collection<T> items, Function<T, String> id, Function<T, String> field) {
+        Map<String, List<String>> grouped = new HashMap<>();
+        for (T item : items) {
+            String itemId = id.apply(item);
+            for (String gram : grams(field.apply(item).toLowerCase())) {
+                grouped.computeIfAbsent(gram, k -> new ArrayList<>()).add(itemId);
+            }
+        }
+        grouped.forEach((gram, ids) -> postings.compute(gram, (k, existing) -> {
+            Set<String> set = existing != null ? existing : ConcurrentHashMap.newKeySet();
+            set.addAll(ids);
+            return set;
+        }));
+    }
+
+    public void remove(String id, String text) {
+        for (String gram : grams(text.toLowerCase())) {
+            postings.computeIfPresent(gram, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    // Ids whose field contains every trigram of the query, or null if the query is too short to use the index
+    public Set<String> candidates(String lowerQuery) {
+        if (lowerQuery.length() < GRAM) {
+            return null;
+        }
+        List<Set<String>> lists = new ArrayList<>();
+        for (String gram : grams(lowerQuery)) {
+            Set<String> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            lists.add(ids);
+        }
+        // Intersect starting from the rarest trigram to keep the working set small
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<String> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
+
+// Roaring-style compressed bitmap of non-negative ints. Values are bucketed by their high 16 bits;
+// each bucket is a sorted char[] while sparse and switches to a 1024-word bitset once dense.
+class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public void add(int value) {
+        char high = (char) (value >>> 16);
+        int i = find(high);
+        if (i < 0) {
+            i = -i - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(containers, i, containers, i + 1, size - i);
+            keys[i] = high;
+            containers[i] = new ArrayContainer();
+            size++;
+        }
+        containers[i] = containers[i].add((char) value);
+    }
+
+    public void remove(int value) {
+        int i = find((char) (value >>> 16));
+        if (i < 0) {
+            return;
+        }
+        Container container = containers[i].remove((char) value);
+        if (container.cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    public boolean contains(int value) {
+        int i = find((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.append(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Size of the intersection without materializing it
+    public int andCardinality(RoaringBitmap other) {
+        int total = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    private void append(char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        keys[size] = key;
+        containers[size++] = container;
+    }
+
+    private int find(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private abstract static class Container {
+        abstract Container add(char value);
+        abstract Container remove(char value);
+        abstract boolean contains(char value);
+        abstract int cardinality();
+        abstract Container and(Container other);
+        abstract int andCardinality(Container other);
+        abstract void forEach(int base, IntConsumer action);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values = new char[4];
+        private int size;
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (size == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, size, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, size - i - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container and(Container other) {
+            ArrayContainer result = new ArrayContainer();
+            result.values = new char[size];
+            if (other instanceof ArrayContainer array) {
+                int i = 0, j = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result.values[result.size++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        result.values[result.size++] = values[i];
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0, j = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[1024];
+        private int cardinality;
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            // Half of ARRAY_MAX, so a bucket hovering around the threshold doesn't flip every update
+            return cardinality <= ARRAY_MAX / 2 ? toArray(words, cardinality) : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[1024];
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            if (count <= ARRAY_MAX) {
+                return toArray(result, count);
+            }
+            BitmapContainer bitmap = new BitmapContainer();
+            System.arraycopy(result, 0, bitmap.words, 0, 1024);
+            bitmap.cardinality = count;
+            return bitmap;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < 1024; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private static ArrayContainer toArray(long[] words, int cardinality) {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[Math.max(4, cardinality)];
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array.values[array.size++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return array;
+        }
+    }
+}
+
+// Bitmap indexes over availability, genre and author. Every book gets a dense ordinal; queries
+// intersect bitmaps and answer counts or ids without touching Book objects. Guarded by a
+// read/write lock, writers hold it only for a few bitmap updates.
+class FacetIndex {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinalOf = new HashMap<>();
+    private String[] idAt = new String[1024];
+    private int[] genreOf = new int[1024];
+    private int[] authorOf = new int[1024];
+    private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+    private int nextOrdinal;
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final RoaringBitmap available = new RoaringBitmap();
+    private final RoaringBitmap borrowed = new RoaringBitmap();
+    private final List<RoaringBitmap> byGenre = new ArrayList<>();
+    private final List<RoaringBitmap> byAuthor = new ArrayList<>();
+
+    // Adds or replaces the facets of a book; idempotent
+    public void put(Book book) {
+        lock.writeLock().lock();
+        try {
+            putLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Same from the raw fields, for records that were never loaded as Books
+    public void put(String id, int genreCode, int authorCode, boolean isBorrowed) {
+        lock.writeLock().lock();
+        try {
+            putLocked(id, genreCode, authorCode, isBorrowed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putAll(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            books.forEach(this::putLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalOf.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            byGenre.get(genreOf[ordinal]).remove(ordinal);
+            byAuthor.get(authorOf[ordinal]).remove(ordinal);
+            all.remove(ordinal);
+            available.remove(ordinal);
+            borrowed.remove(ordinal);
+            idAt[ordinal] = null;
+            freeOrdinals.push(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setBorrowed(String id, boolean isBorrowed) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalOf.get(id);
+            if (ordinal != null) {
+                markBorrowed(ordinal, isBorrowed);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Books matching every given facet; null arguments are ignored
+    public int count(String genre, String author, Boolean isBorrowed) {
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> filters = filters(genre, author, isBorrowed);
+            if (filters == null) {
+                return 0;
+            }
+            if (filters.size() == 1) {
+                return filters.get(0).cardinality();
+            }
+            RoaringBitmap head = filters.get(0);
+            for (int i = 1; i < filters.size() - 1; i++) {
+                head = head.and(filters.get(i));
+            }
+            return head.andCardinality(filters.get(filters.size() - 1));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<String> ids(String genre, String author, Boolean isBorrowed, int limit) {
+        lock.readLock().lock();
+        try {
+            List<String> ids = new ArrayList<>();
+            List<RoaringBitmap> filters = filters(genre, author, isBorrowed);
+            if (filters == null) {
+                return ids;
+            }
+            RoaringBitmap result = filters.get(0);
+            for (int i = 1; i < filters.size(); i++) {
+                result = result.and(filters.get(i));
+            }
+            result.forEach(ordinal -> {
+                if (ids.size() < limit) {
+                    ids.add(idAt[ordinal]);
+                }
+            });
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Per-genre counts, optionally restricted to available or borrowed books
+    public Map<String, Integer> genreCounts(Boolean isBorrowed) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = new TreeMap<>();
+            for (int code = 0; code < byGenre.size(); code++) {
+                RoaringBitmap genre = byGenre.get(code);
+                int count = isBorrowed == null ? genre.cardinality()
+                    : genre.andCardinality(isBorrowed ? borrowed : available);
+                if (count > 0) {
+                    counts.put(Book.GENRES.decode(code), count);
+                }
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Smallest bitmap first so every intersection shrinks as fast as possible; null when a facet has no books
+    private List<RoaringBitmap> filters(String genre, String author, Boolean isBorrowed) {
+        List<RoaringBitmap> filters = new ArrayList<>(3);
+        if (genre != null) {
+            int code = Book.GENRES.codeOf(genre);
+            if (code < 0 || code >= byGenre.size()) {
+                return null;
+            }
+            filters.add(byGenre.get(code));
+        }
+        if (author != null) {
+            int code = Book.AUTHORS.codeOf(author);
+            if (code < 0 || code >= byAuthor.size()) {
+                return null;
+            }
+            filters.add(byAuthor.get(code));
+        }
+        if (isBorrowed != null) {
+            filters.add(isBorrowed ? borrowed : available);
+        }
+        if (filters.isEmpty()) {
+            filters.add(all);
+        }
+        filters.sort(Comparator.comparingInt(RoaringBitmap::cardinality));
+        return filters;
+    }
+
+    private void putLocked(Book book) {
+        putLocked(book.getId(), book.getGenreCode(), book.getAuthorCode(), book.isBorrowed());
+    }
+
+    private void putLocked(String id, int genreCode, int authorCode, boolean isBorrowed) {
+        Integer ordinal = ordinalOf.get(id);
+        if (ordinal == null) {
+            ordinal = freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop();
+            if (ordinal == idAt.length) {
+                idAt = Arrays.copyOf(idAt, ordinal * 2);
+                genreOf = Arrays.copyOf(genreOf, ordinal * 2);
+                authorOf = Arrays.copyOf(authorOf, ordinal * 2);
+            }
+            ordinalOf.put(id, ordinal);
+            idAt[ordinal] = id;
+            all.add(ordinal);
+        } else {
+            byGenre.get(genreOf[ordinal]).remove(ordinal);
+            byAuthor.get(authorOf[ordinal]).remove(ordinal);
+        }
+        genreOf[ordinal] = genreCode;
+        authorOf[ordinal] = authorCode;
+        bitmapFor(byGenre, genreCode).add(ordinal);
+        bitmapFor(byAuthor, authorCode).add(ordinal);
+        markBorrowed(ordinal, isBorrowed);
+    }
+
+    private void markBorrowed(int ordinal, boolean isBorrowed) {
+        if (isBorrowed) {
+            borrowed.add(ordinal);
+            available.remove(ordinal);
+        } else {
+            available.add(ordinal);
+            borrowed.remove(ordinal);
+        }
+    }
+
+    private static RoaringBitmap bitmapFor(List<RoaringBitmap> bitmaps, int code) {
+        while (bitmaps.size() <= code) {
+            bitmaps.add(new RoaringBitmap());
+        }
+        return bitmaps.get(code);
+    }
+}
+
+// Library class to manage book collection. Safe for concurrent use: every mutation of an id runs
+// inside ConcurrentHashMap.compute on that id, so index updates and journal records for one book are
+// ordered, while reads and searches never take a lock.
+class Library implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private Map<String, Book> books;
+    // Secondary indexes, all built together on first use (see ensureIndexes)
+    private transient volatile TrigramIndex titleIndex;
+    private transient volatile TrigramIndex authorIndex;
+    private transient volatile PrefixIndex titlePrefixes;
+    private transient volatile PrefixIndex authorPrefixes;
+    private transient volatile FacetIndex facets;
+    private transient volatile boolean indexesBuilt;
+    private transient ReentrantReadWriteLock indexGate;
+    private transient volatile LibraryJournal journal;
+    private transient CirculationLog circulation;
+    // Books still sitting unread in the mapped catalog, keyed by id
+    private transient CatalogFile catalog;
+    private transient Map<String, Integer> unloaded;
+
+    public Library() {
+        books = new ConcurrentHashMap<>();
+        unloaded = new ConcurrentHashMap<>();
+        indexGate = new ReentrantReadWriteLock();
+        circulation = new CirculationLog();
+    }
+
+    // Library backed by a mapped catalog, books are materialized on first access
+    public Library(CatalogFile catalog) {
+        this();
+        this.catalog = catalog;
+        unloaded.putAll(catalog.offsets());
+    }
+
+    public void addBook(Book book) {
+        mutate(() -> books.compute(book.getId(), (id, previous) -> {
+            Integer offset = unloaded.remove(id);
+            if (previous != null) {
+                unindex(previous);
+            } else if (offset != null) {
+                unindex(catalog.read(id, offset));
+            }
+            index(book);
+            if (journal != null) {
+                journal.logAdd(book);
+            }
+            return book;
+        }));
+    }
+
+    // Adds the book only if its id is free; false if another book already holds it
+    public boolean addNewBook(Book book) {
+        if (getBook(book.getId()) != null) {
+            return false;
+        }
+        boolean[] added = new boolean[1];
+        mutate(() -> books.compute(book.getId(), (id, current) -> {
+            if (current != null) {
+                return current;
+            }
+            added[0] = true;
+            unloaded.remove(id);
+            index(book);
+            if (journal != null) {
+                journal.logAdd(book);
+            }
+            return book;
+        }));
+        return added[0];
+    }
+
+    // Bulk insert used by imports: ids that are already taken are skipped. The batch passes the
+    // index gate once, but each book is indexed inside its own compute, like addBook, rather than
+    // once per batch afterwards: a concurrent edit or remove of a just-inserted id could otherwise
+    // run its index updates before the batch's and leave stale entries. Returns the number added.
+    public int addBooks(Collection<Book> batch) {
+        int[] added = new int[1];
+        mutate(() -> {
+            for (Book book : batch) {
+                books.compute(book.getId(), (id, current) -> {
+                    if (current != null || unloaded.containsKey(id)) {
+                        return current;
+                    }
+                    index(book);
+                    if (journal != null) {
+                        journal.logAdd(book);
+                    }
+                    added[0]++;
+                    return book;
+                });
+            }
+            return null;
+        });
+        return added[0];
+    }
+
+    public boolean removeBook(String id) {
+        boolean[] existed = new boolean[1];
+        mutate(() -> books.compute(id, (key, current) -> {
+            if (current != null) {
+                existed[0] = true;
+                unindex(current);
+            } else {
+                Integer offset = unloaded.remove(key);
+                existed[0] = offset != null;
+                if (existed[0]) {
+                    unindex(catalog.read(key, offset));
+                }
+            }
+            if (existed[0] && journal != null) {
+                journal.logRemove(key);
+            }
+            return null;
+        }));
+        return existed[0];
+    }
+
+    // Replaces the book's details; its circulation history (borrow count) carries over
+    public void editBook(Book updated) {
+        getBook(updated.getId());
+        mutate(() -> books.compute(updated.getId(), (id, previous) -> {
+            if (previous != null) {
+                updated.setBorrowCount(previous.getBorrowCount());
+                unindex(previous);
+            }
+            index(updated);
+            if (journal != null) {
+                journal.logAdd(updated);
+            }
+            return updated;
+        }));
+    }
+
+    // Atomically marks the book borrowed; false if it is missing or already out
+    public boolean borrowBook(String id) {
+        return setBorrowed(id, true, System.currentTimeMillis(), -1);
+    }
+
+    // Atomically marks the book returned; false if it is missing or was not borrowed
+    public boolean returnBook(String id) {
+        return setBorrowed(id, false, System.currentTimeMillis(), -1);
+    }
+
+    // Journal replay: the event happened at the given time, or at an unknown time if negative. A
+    // logged borrow count is set as is, so a record already reflected in the snapshot is a no-op;
+    // legacy records without one (negative) still increment.
+    public boolean restoreBorrowed(String id, boolean borrowed, long time, int borrowCount) {
+        return setBorrowed(id, borrowed, time, borrowCount);
+    }
+
+    public List<Book> searchBooks(String query, String searchType) {
+        String needle = query.toLowerCase();
+        if (searchType.equals("Genre")) {
+            // A few dozen distinct genres: match them once, then compare int codes per book
+            BitSet codes = Book.GENRES.matching(needle);
+            return scan(book -> codes.get(book.getGenreCode()));
+        }
+        ensureIndexes();
+        TrigramIndex index = switch (searchType) {
+            case "Title" -> titleIndex;
+            case "Author" -> authorIndex;
+            default -> null;
+        };
+        if (index == null) {
+            // Unknown search types match against an empty field
+            return needle.isEmpty() ? new ArrayList<>(getAllBooks()) : new ArrayList<>();
+        }
+        Predicate<Book> matches = book -> field(book, searchType).toLowerCase().contains(needle);
+        Set<String> candidates = index.candidates(needle);
+        if (candidates == null) {
+            return scan(matches);
+        }
+        // Trigram hits can still be false positives (e.g. "abcd" vs "abc...bcd"), so verify each one
+        return candidates.stream()
+            .map(this::getBook)
+            .filter(Objects::nonNull)
+            .filter(matches)
+            .collect(Collectors.toList());
+    }
+
+    // Exact-match filters, compared on dictionary codes rather than strings
+    public List<Book> filterByGenre(String genre) {
+        int code = Book.GENRES.codeOf(genre);
+        return code < 0 ? new ArrayList<>() : scan(book -> book.getGenreCode() == code);
+    }
+
+    public List<Book> filterByAuthor(String author) {
+        int code = Book.AUTHORS.codeOf(author);
+        return code < 0 ? new ArrayList<>() : scan(book -> book.getAuthorCode() == code);
+    }
+
+    // Bitmap indexes for faceted queries
+    public FacetIndex facets() {
+        ensureIndexes();
+        return facets;
+    }
+
+    // Most borrowed titles / authors starting with the prefix, best first
+    public List<String> suggestTitles(String prefix, int limit) {
+        ensureIndexes();
+        return titlePrefixes.suggest(prefix, limit);
+    }
+
+    public List<String> suggestAuthors(String prefix, int limit) {
+        ensureIndexes();
+        return authorPrefixes.suggest(prefix, limit);
+    }
+
+    // Borrow/return history and the analytics maintained over it
+    public CirculationLog circulation() {
+        return circulation;
+    }
+
+    public boolean indexesReady() {
+        return indexesBuilt;
+    }
+
+    // Builds every secondary index; deferred so startup only pays for decoding the catalog index.
+    // Records still in the mapped catalog are indexed from their fields without loading them, so a
+    // book loaded later is already indexed. Until this completes writers pass through the read side
+    // of indexGate, so the build (write side) never races a half-finished mutation. Afterwards
+    // writers skip the gate entirely.
+    public void ensureIndexes() {
+        if (indexesBuilt) {
+            return;
+        }
+        indexGate.writeLock().lock();
+        try {
+            if (indexesBuilt) {
+                return;
+            }
+            titleIndex = new TrigramIndex();
+            authorIndex = new TrigramIndex();
+            titlePrefixes = new PrefixIndex();
+            authorPrefixes = new PrefixIndex();
+            facets = new FacetIndex();
+            Collection<Book> loaded = books.values();
+            titleIndex.addAll(loaded, Book::getId, Book::getTitle);
+            authorIndex.addAll(loaded, Book::getId, Book::getAuthor);
+            titlePrefixes.addAll(loaded, Book::getTitle, Book::getBorrowCount);
+            authorPrefixes.addAll(loaded, Book::getAuthor, Book::getBorrowCount);
+            facets.putAll(loaded);
+            Collection<Map.Entry<String, Integer>> mapped = unloaded.entrySet();
+            titleIndex.addAll(mapped, Map.Entry::getKey, record -> catalog.title(record.getValue()));
+            authorIndex.addAll(mapped, Map.Entry::getKey, record -> catalog.author(record.getValue()));
+            titlePrefixes.addAll(mapped, record -> catalog.title(record.getValue()),
+                record -> catalog.borrowCount(record.getValue()));
+            authorPrefixes.addAll(mapped, record -> catalog.author(record.getValue()),
+                record -> catalog.borrowCount(record.getValue()));
+            for (Map.Entry<String, Integer> record : mapped) {
+                int offset = record.getValue();
+                facets.put(record.getKey(), Book.GENRES.encode(catalog.genre(offset)),
+                    Book.AUTHORS.encode(catalog.author(offset)), catalog.borrowed(offset));
+            }
+            indexesBuilt = true;
+        } finally {
+            indexGate.writeLock().unlock();
+        }
+    }
+
+    // Mutations made after this point are appended to the journal
+    public void attachJournal(LibraryJournal journal) {
+        this.journal = journal;
+    }
+
+    public Collection<Book> getAllBooks() {
+        materializeAll();
+        return books.values();
+    }
+
+    // For snapshots: the books loaded so far, and the rest as record offsets into catalog(), which
+    // are copied through as bytes instead of being loaded
+    public Collection<Book> loadedBooks() {
+        return books.values();
+    }
+
+    public Map<String, Integer> mappedRecords() {
+        return unloaded;
+    }
+
+    public CatalogFile catalog() {
+        return catalog;
+    }
+
+    // Every book id without loading any book, for views that fetch rows as they are shown
+    public List<String> ids() {
+        List<String> ids = new ArrayList<>(size());
+        ids.addAll(books.keySet());
+        ids.addAll(unloaded.keySet());
+        return ids;
+    }
+
+    public Book getBook(String id) {
+        Book book = books.get(id);
+        if (book == null && !unloaded.isEmpty()) {
+            book = mutate(() -> books.computeIfAbsent(id, key -> {
+                Integer offset = unloaded.remove(key);
+                if (offset == null) {
+                    return null;
+                }
+                // Already indexed, either by the index build or never (indexes not built yet)
+                return catalog.read(key, offset);
+            }));
+        }
+        return book;
+    }
+
+    public int size() {
+        return books.size() + unloaded.size();
+    }
+
+    private boolean setBorrowed(String id, boolean borrowed, long time, int borrowCount) {
+        if (getBook(id) == null) {
+            return false;
+        }
+        boolean[] changed = new boolean[1];
+        mutate(() -> books.computeIfPresent(id, (key, book) -> {
+            boolean flipped = book.isBorrowed() != borrowed;
+            int previousCount = book.getBorrowCount();
+            int count = !borrowed ? previousCount
+                : borrowCount >= 0 ? borrowCount
+                : flipped ? previousCount + 1 : previousCount;
+            if (!flipped && count == previousCount) {
+                return book;
+            }
+            book.setBorrowed(borrowed);
+            book.setBorrowCount(count);
+            changed[0] = flipped;
+            if (indexesBuilt) {
+                if (flipped) {
+                    facets.setBorrowed(key, borrowed);
+                }
+                if (count != previousCount) {
+                    titlePrefixes.adjust(book.getTitle(), count - previousCount);
+                    authorPrefixes.adjust(book.getAuthor(), count - previousCount);
+                }
+            }
+            int event = flipped && time >= 0 ? circulation.record(key, borrowed, time) : -1;
+            if (flipped && journal != null) {
+                if (borrowed) {
+                    journal.logBorrow(key, time, count, event);
+                } else {
+                    journal.logReturn(key, time, event);
+                }
+            }
+            return book;
+        }));
+        return changed[0];
+    }
+
+    private <T> T mutate(Supplier<T> mutation) {
+        if (indexesBuilt) {
+            return mutation.get();
+        }
+        indexGate.readLock().lock();
+        try {
+            return mutation.get();
+        } finally {
+            indexGate.readLock().unlock();
+        }
+    }
+
+    private void materializeAll() {
+        if (unloaded.isEmpty()) {
+            return;
+        }
+        for (String id : new ArrayList<>(unloaded.keySet())) {
+            getBook(id);
+        }
+    }
+
+    // Books matching the filter. Records still in the mapped catalog are tested on a scratch copy and
+    // only the matches are loaded, so a full scan does not materialize the catalog.
+    private List<Book> scan(Predicate<Book> filter) {
+        List<Book> matches = books.values().stream().filter(filter).collect(Collectors.toList());
+        for (Map.Entry<String, Integer> record : unloaded.entrySet()) {
+            if (filter.test(catalog.read(record.getKey(), record.getValue()))) {
+                Book book = getBook(record.getKey());
+                if (book != null) {
+                    matches.add(book);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static String field(Book book, String searchType) {
+        return switch (searchType) {
+            case "Title" -> book.getTitle();
+            case "Author" -> book.getAuthor();
+            case "Genre" -> book.getGenre();
+            default -> "";
+        };
+    }
+
+    private void index(Book book) {
+        if (!indexesBuilt) {
+            return;
+        }
+        titleIndex.add(book.getId(), book.getTitle());
+        authorIndex.add(book.getId(), book.getAuthor());
+        titlePrefixes.add(book.getTitle(), book.getBorrowCount());
+        authorPrefixes.add(book.getAuthor(), book.getBorrowCount());
+        facets.put(book);
+    }
+
+    private void unindex(Book book) {
+        if (!indexesBuilt) {
+            return;
+        }
+        titleIndex.remove(book.getId(), book.getTitle());
+        authorIndex.remove(book.getId(), book.getAuthor());
+        titlePrefixes.remove(book.getTitle(), book.getBorrowCount());
+        authorPrefixes.remove(book.getAuthor(), book.getBorrowCount());
+        facets.remove(book.getId());
+    }
+
+    // Only used to convert a legacy library.dat, transient state starts out empty
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        books = new ConcurrentHashMap<>(books);
+        unloaded = new ConcurrentHashMap<>();
+        indexGate = new ReentrantReadWriteLock();
+        circulation = new CirculationLog();
+    }
+}
+
+// Radix tree over lowercased titles or authors for as-you-type suggestions. Every node caches the
+// TOP_K best keys of its subtree ranked by borrow count, so a lookup is one walk down the prefix
+// and a copy of that cache, however many keys share the prefix.
+class PrefixIndex {
+    private static final int TOP_K = 10;
+    private static final Node[] NO_NODES = new Node[0];
+    private static final Comparator<Node> RANKING = Comparator.<Node>comparingLong(n -> -n.score)
+        .thenComparing(n -> n.display);
+    private final Node root = new Node("", null);
+
+    private static final class Node {
+        String edge;
+        Node parent;
+        Node[] children = NO_NODES;
+        // Terminal data: how many books share this key and their summed borrow count
+        String display;
+        int books;
+        long score;
+        Node[] top = NO_NODES;
+
+        Node(String edge, Node parent) {
+            this.edge = edge;
+            this.parent = parent;
+        }
+    }
+
+    public synchronized void add(String text, int borrowCount) {
+        String key = text.toLowerCase();
+        if (key.isEmpty()) {
+            return;
+        }
+        Node node = insert(key);
+        if (node.books++ == 0) {
+            node.display = text;
+        }
+        node.score += borrowCount;
+        refresh(node);
+    }
+
+    public synchronized <T> void addAll(Collection<T> items, Function<T, String> field, ToIntFunction<T> borrowCount) {
+        for (T item : items) {
+            add(field.apply(item), borrowCount.applyAsInt(item));
+        }
+    }
+
+    public synchronized void remove(String text, int borrowCount) {
+        Node node = find(text.toLowerCase());
+        if (node == null || node.books == 0) {
+            return;
+        }
+        node.score -= borrowCount;
+        if (--node.books > 0) {
+            refresh(node);
+            return;
+        }
+        node.score = 0;
+        node.display = null;
+        refresh(prune(node));
+    }
+
+    public synchronized void adjust(String text, int delta) {
+        Node node = find(text.toLowerCase());
+        if (node != null && node.books > 0) {
+            node.score += delta;
+            refresh(node);
+        }
+    }
+
+    public synchronized List<String> suggest(String prefix, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        Node node = locate(prefix.toLowerCase());
+        if (node != null) {
+            for (int i = 0; i < node.top.length && i < limit; i++) {
+                suggestions.add(node.top[i].display);
+            }
+        }
+        return suggestions;
+    }
+
+    private Node insert(String key) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = childIndex(node, key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i), node);
+                node.children = insertAt(node.children, -index - 1, leaf);
+                return leaf;
+            }
+            Node child = node.children[index];
+            int common = 1;
+            while (common < child.edge.length() && i + common < key.length()
+                && child.edge.charAt(common) == key.charAt(i + common)) {
+                common++;
+            }
+            if (common < child.edge.length()) {
+                // Split the edge so the key ends (or branches) at the new middle node
+                Node middle = new Node(child.edge.substring(0, common), node);
+                child.edge = child.edge.substring(common);
+                child.parent = middle;
+                middle.children = new Node[]{child};
+                middle.top = child.top;
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        return node;
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = childIndex(node, key.charAt(i));
+            if (index < 0 || !key.startsWith(node.children[index].edge, i)) {
+                return null;
+            }
+            node = node.children[index];
+            i += node.edge.length();
+        }
+        return node;
+    }
+
+    // Node whose subtree holds exactly the keys starting with the prefix
+    private Node locate(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int index = childIndex(node, prefix.charAt(i));
+            if (index < 0) {
+                return null;
+            }
+            Node child = node.children[index];
+            int remaining = prefix.length() - i;
+            if (remaining <= child.edge.length()) {
+                return child.edge.regionMatches(0, prefix, i, remaining) ? child : null;
+            }
+            if (!prefix.startsWith(child.edge, i)) {
+                return null;
+            }
+            node = child;
+            i += child.edge.length();
+        }
+        return node;
+    }
+
+    // Drops an emptied leaf and re-merges single-child chains; returns the lowest node whose cache is stale
+    private Node prune(Node node) {
+        if (node != root && node.children.length == 0) {
+            Node parent = node.parent;
+            parent.children = removeAt(parent.children, childIndex(parent, node.edge.charAt(0)));
+            node = parent;
+        }
+        if (node != root && node.books == 0 && node.children.length == 1) {
+            Node child = node.children[0];
+            child.edge = node.edge + child.edge;
+            child.parent = node.parent;
+            node.parent.children[childIndex(node.parent, child.edge.charAt(0))] = child;
+            return child.parent;
+        }
+        return node;
+    }
+
+    private void refresh(Node node) {
+        for (; node != null; node = node.parent) {
+            List<Node> candidates = new ArrayList<>();
+            if (node.books > 0) {
+                candidates.add(node);
+            }
+            for (Node child : node.children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(RANKING);
+            node.top = candidates.subList(0, Math.min(TOP_K, candidates.size())).toArray(NO_NODES);
+        }
+    }
+
+    private static int childIndex(Node node, char first) {
+        int low = 0, high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children[mid].edge.charAt(0);
+            if (c < first) {
+                low = mid + 1;
+            } else if (c > first) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static Node[] insertAt(Node[] nodes, int index, Node node) {
+        Node[] result = new Node[nodes.length + 1];
+        System.arraycopy(nodes, 0, result, 0, index);
+        result[index] = node;
+        System.arraycopy(nodes, index, result, index + 1, nodes.length - index);
+        return result;
+    }
+
+    private static Node[] removeAt(Node[] nodes, int index) {
+        Node[] result = new Node[nodes.length - 1];
+        System.arraycopy(nodes, 0, result, 0, index);
+        System.arraycopy(nodes, index + 1, result, index, nodes.length - index - 1);
+        return result;
+    }
+}
+
+// Append-only log of borrow/return events with aggregates updated as each event arrives: lifetime
+// and sliding-window borrow counts per book, top-k over the window counts and a loan-duration
+// histogram. Queries read these directly and never rescan the log; an event is touched once more
+// only when it slides out of the window.
+class CirculationLog {
+    public static final long DEFAULT_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final byte BORROW = 1;
+    private static final byte RETURN = 2;
+    // Loan durations in seconds, bucket i holds [2^(i-1), 2^i)
+    private static final int HISTOGRAM_BUCKETS = 64;
+
+    private final long windowMillis;
+
+    // The log: one slot per event in parallel primitive arrays
+    private long[] times = new long[1024];
+    private int[] bookOf = new int[1024];
+    private byte[] types = new byte[1024];
+    private int events;
+    // First event still inside the window
+    private int windowStart;
+
+    // Per-book state indexed by a dense ordinal handed out on the book's first event
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] ids = new String[256];
+    private int[] totalBorrows = new int[256];
+    private long[] loanStart = new long[256];
+    // Books with a non-zero window count sit in the bucket for that count, linked through these
+    private Bucket[] bucketOf = new Bucket[256];
+    private int[] nextInBucket = new int[256];
+    private int[] prevInBucket = new int[256];
+    // Buckets are ordered by count, so incrementing or decrementing a book is O(1)
+    private Bucket lowest;
+    private Bucket highest;
+
+    private final long[] loanHistogram = new long[HISTOGRAM_BUCKETS];
+    private long loans;
+    private long loanMillis;
+
+    private static final class Bucket {
+        final int count;
+        int head = -1;
+        Bucket lower;
+        Bucket higher;
+
+        Bucket(int count) {
+            this.count = count;
+        }
+    }
+
+    public CirculationLog() {
+        this(DEFAULT_WINDOW_MILLIS);
+    }
+
+    public CirculationLog(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    // Returns the event's position in the log, which the journal keeps to tell replayed events apart
+    public synchronized int record(String id, boolean borrowed, long time) {
+        // Keep the log ordered even if the clock steps back, window expiry relies on it
+        if (events > 0 && time < times[events - 1]) {
+            time = times[events - 1];
+        }
+        expire(time);
+        int ordinal = ordinalOf(id);
+        if (events == times.length) {
+            times = Arrays.copyOf(times, events * 2);
+            bookOf = Arrays.copyOf(bookOf, events * 2);
+            types = Arrays.copyOf(types, events * 2);
+        }
+        times[events] = time;
+        bookOf[events] = ordinal;
+        types[events] = borrowed ? BORROW : RETURN;
+        events++;
+        if (borrowed) {
+            totalBorrows[ordinal]++;
+            loanStart[ordinal] = time;
+            increment(ordinal);
+        } else if (loanStart[ordinal] >= 0) {
+            long duration = time - loanStart[ordinal];
+            loanHistogram[HISTOGRAM_BUCKETS - Long.numberOfLeadingZeros(duration / 1000)]++;
+            loans++;
+            loanMillis += duration;
+            loanStart[ordinal] = -1;
+        }
+        return events - 1;
+    }
+
+    // Snapshot form: the book ids by ordinal, then every event as (time, ordinal, type)
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        int books = ordinals.size();
+        out.writeInt(books);
+        for (int i = 0; i < books; i++) {
+            out.writeUTF(ids[i]);
+        }
+        out.writeInt(events);
+        for (int i = 0; i < events; i++) {
+            out.writeLong(times[i]);
+            out.writeInt(bookOf[i]);
+            out.writeByte(types[i]);
+        }
+    }
+
+    // Re-records a snapshot's events in order, which rebuilds every aggregate along the way
+    public synchronized void readFrom(DataInputStream in) throws IOException {
+        String[] books = new String[in.readInt()];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = in.readUTF();
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long time = in.readLong();
+            String id = books[in.readInt()];
+            record(id, in.readByte() == BORROW, time);
+        }
+    }
+
+    // Most borrowed books within the window ending at now, best first, with their counts
+    public synchronized Map<String, Integer> topBorrowed(int k, long now) {
+        expire(now);
+        Map<String, Integer> top = new LinkedHashMap<>();
+        for (Bucket bucket = highest; bucket != null && top.size() < k; bucket = bucket.lower) {
+            for (int ordinal = bucket.head; ordinal >= 0 && top.size() < k; ordinal = nextInBucket[ordinal]) {
+                top.put(ids[ordinal], bucket.count);
+            }
+        }
+        return top;
+    }
+
+    public synchronized int borrowsInWindow(String id, long now) {
+        expire(now);
+        Integer ordinal = ordinals.get(id);
+        Bucket bucket = ordinal == null ? null : bucketOf[ordinal];
+        return bucket == null ? 0 : bucket.count;
+    }
+
+    public synchronized int totalBorrows(String id) {
+        Integer ordinal = ordinals.get(id);
+        return ordinal == null ? 0 : totalBorrows[ordinal];
+    }
+
+    public synchronized long averageLoanMillis() {
+        return loans == 0 ? 0 : loanMillis / loans;
+    }
+
+    // Upper bound of the histogram bucket holding the given fraction of completed loans
+    public synchronized long loanPercentileMillis(double fraction) {
+        long rank = (long) Math.ceil(fraction * loans);
+        long seen = 0;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            seen += loanHistogram[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 1000 : Math.min(Long.MAX_VALUE / 1000, 1L << i) * 1000;
+            }
+        }
+        return 0;
+    }
+
+    public synchronized long completedLoans() {
+        return loans;
+    }
+
+    public synchronized int eventCount() {
+        return events;
+    }
+
+    public long windowMillis() {
+        return windowMillis;
+    }
+
+    private void expire(long now) {
+        while (windowStart < events && times[windowStart] <= now - windowMillis) {
+            if (types[windowStart] == BORROW) {
+                decrement(bookOf[windowStart]);
+            }
+            windowStart++;
+        }
+    }
+
+    private int ordinalOf(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        int next = ordinals.size();
+        if (next == ids.length) {
+            int capacity = next * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            totalBorrows = Arrays.copyOf(totalBorrows, capacity);
+            loanStart = Arrays.copyOf(loanStart, capacity);
+            bucketOf = Arrays.copyOf(bucketOf, capacity);
+            nextInBucket = Arrays.copyOf(nextInBucket, capacity);
+            prevInBucket = Arrays.copyOf(prevInBucket, capacity);
+        }
+        ordinals.put(id, next);
+        ids[next] = id;
+        loanStart[next] = -1;
+        return next;
+    }
+
+    private void increment(int ordinal) {
+        Bucket from = bucketOf[ordinal];
+        int count = from == null ? 1 : from.count + 1;
+        Bucket to = from == null ? lowest : from.higher;
+        if (to == null || to.count != count) {
+            to = insertBucket(count, from, to);
+        }
+        move(ordinal, from, to);
+    }
+
+    private void decrement(int ordinal) {
+        Bucket from = bucketOf[ordinal];
+        if (from == null) {
+            return;
+        }
+        Bucket to = null;
+        if (from.count > 1) {
+            to = from.lower;
+            if (to == null || to.count != from.count - 1) {
+                to = insertBucket(from.count - 1, from.lower, from);
+            }
+        }
+        move(ordinal, from, to);
+    }
+
+    private Bucket insertBucket(int count, Bucket lower, Bucket higher) {
+        Bucket bucket = new Bucket(count);
+        bucket.lower = lower;
+        bucket.higher = higher;
+        if (lower != null) {
+            lower.higher = bucket;
+        } else {
+            lowest = bucket;
+        }
+        if (higher != null) {
+            higher.lower = bucket;
+        } else {
+            highest = bucket;
+        }
+        return bucket;
+    }
+
+    private void move(int ordinal, Bucket from, Bucket to) {
+        if (from != null) {
+            int prev = prevInBucket[ordinal], next = nextInBucket[ordinal];
+            if (prev >= 0) {
+                nextInBucket[prev] = next;
+            } else {
+                from.head = next;
+            }
+            if (next >= 0) {
+                prevInBucket[next] = prev;
+            }
+            if (from.head < 0) {
+                // Drop the emptied bucket from the chain
+                if (from.lower != null) {
+                    from.lower.higher = from.higher;
+                } else {
+                    lowest = from.higher;
+                }
+                if (from.higher != null) {
+                    from.higher.lower = from.lower;
+                } else {
+                    highest = from.lower;
+                }
+            }
+        }
+        bucketOf[ordinal] = to;
+        if (to != null) {
+            prevInBucket[ordinal] = -1;
+            nextInBucket[ordinal] = to.head;
+            if (to.head >= 0) {
+                prevInBucket[to.head] = ordinal;
+            }
+            to.head = ordinal;
+        }
+    }
+}
+
+// Versioned binary catalog: header, length-prefixed book records, an id -> offset index, then the
+// circulation log. The file is memory-mapped and only the index and circulation log are decoded up front.
+class CatalogFile {
+    private static final int MAGIC = 0x4C434154; // "LCAT"
+    // Version 2 appends the borrow count to each record, version 3 the circulation log after the
+    // index; older files still load
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+
+    private final MappedByteBuffer buffer;
+    private final Map<String, Integer> offsets;
+    private final int version;
+
+    private CatalogFile(MappedByteBuffer buffer, Map<String, Integer> offsets, int version) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.version = version;
+    }
+
+    public static Library load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new Library();
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog larger than 2 GB: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a library catalog: " + path);
+        }
+        int version = buffer.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported catalog version " + version);
+        }
+        int count = buffer.getInt(8);
+        int position = (int) buffer.getLong(12);
+        Map<String, Integer> offsets = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt(position);
+            String id = readString(buffer, position);
+            position += 4 + length;
+            offsets.put(id, buffer.getInt(position));
+            position += 4;
+        }
+        Library library = new Library(new CatalogFile(buffer, offsets, version));
+        if (version >= 3) {
+            byte[] section = new byte[buffer.limit() - position];
+            buffer.get(position, section);
+            library.circulation().readFrom(new DataInputStream(new ByteArrayInputStream(section)));
+        }
+        return library;
+    }
+
+    public static void write(Library library, Path path) throws IOException {
+        Map<String, Integer> offsets = new LinkedHashMap<>();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0); // book count and index offset, patched below
+            out.writeLong(0);
+            // Iterated weakly consistently while writers carry on, so count what actually gets written.
+            // Mapped records go first: one loaded meanwhile is then written again from the loaded
+            // pass, and that later offset is the one the index keeps.
+            for (Map.Entry<String, Integer> record : library.mappedRecords().entrySet()) {
+                offsets.put(record.getKey(), out.size());
+                library.catalog().copyRecord(record.getValue(), out);
+            }
+            for (Book book : library.loadedBooks()) {
+                offsets.put(book.getId(), out.size());
+                writeString(out, book.getTitle());
+                writeString(out, book.getAuthor());
+                writeString(out, book.getGenre());
+                out.writeBoolean(book.isBorrowed());
+                out.writeInt(book.getBorrowCount());
+            }
+            long indexOffset = out.size();
+            for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            // Taken after the books: an event missing from it is also missing from the book state
+            // above, so journal replay can re-record exactly the events numbered past its end
+            library.circulation().writeTo(out);
+            out.flush();
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Catalog larger than 2 GB: " + path);
+            }
+            ByteBuffer patch = ByteBuffer.allocate(12).putInt(0, offsets.size()).putLong(4, indexOffset);
+            fos.getChannel().write(patch, 8);
+            fos.getFD().sync();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // One-off conversion of a Java-serialized library.dat into the catalog format
+    public static void convertLegacy(Path legacyPath, Path catalogPath) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(legacyPath)))) {
+            write((Library) ois.readObject(), catalogPath);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public Map<String, Integer> offsets() {
+        return offsets;
+    }
+
+    // Single fields of a record, for index builds that should not load the whole book
+    public String title(int offset) {
+        return readString(buffer, offset);
+    }
+
+    public String author(int offset) {
+        return readString(buffer, skipStrings(offset, 1));
+    }
+
+    public String genre(int offset) {
+        return readString(buffer, skipStrings(offset, 2));
+    }
+
+    public boolean borrowed(int offset) {
+        return buffer.get(skipStrings(offset, 3)) != 0;
+    }
+
+    public int borrowCount(int offset) {
+        return version >= 2 ? buffer.getInt(skipStrings(offset, 3) + 1) : 0;
+    }
+
+    // Writes the record in the current layout straight from the mapped bytes; the borrow count is
+    // written separately since version 1 records have none
+    public void copyRecord(int offset, DataOutputStream out) throws IOException {
+        int countAt = skipStrings(offset, 3) + 1;
+        byte[] bytes = new byte[countAt - offset];
+        buffer.get(offset, bytes);
+        out.write(bytes);
+        out.writeInt(borrowCount(offset));
+    }
+
+    // Absolute reads only, so the shared buffer is never repositioned
+    public Book read(String id, int offset) {
+        int position = offset;
+        String title = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        String author = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        String genre = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        Book book = new Book(id, title, author, genre);
+        book.setBorrowed(buffer.get(position) != 0);
+        if (version >= 2) {
+            book.setBorrowCount(buffer.getInt(position + 1));
+        }
+        return book;
+    }
+
+    private int skipStrings(int position, int count) {
+        for (int i = 0; i < count; i++) {
+            position += 4 + buffer.getInt(position);
+        }
+        return position;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
+
+// Append-only journal of library mutations, replayed on top of the last snapshot at startup
+class LibraryJournal implements Closeable {
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_BORROW = 3;
+    private static final byte OP_RETURN = 4;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final long SYNC_INTERVAL_MS = 50;
+    private static final int COMPACT_THRESHOLD = 10_000;
+
+    private final Library library;
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path retiredPath;
+    private final ScheduledExecutorService syncer;
+    private FileChannel channel;
+    private DataOutputStream out;
+    private boolean dirty;
+    private boolean compactionPending;
+    private int recordsSinceSnapshot;
+
+    private LibraryJournal(Library library, Path snapshotPath, Path journalPath, long validLength) throws IOException {
+        this.library = library;
+        this.snapshotPath = snapshotPath;
+        this.journalPath = journalPath;
+        this.retiredPath = retiredPath(journalPath);
+        openChannel(validLength);
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-journal-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Loads the snapshot, replays the journal tail and attaches a journal for further mutations
+    public static LibraryJournal open(Path snapshotPath, Path journalPath) throws IOException {
+        Library library = readSnapshot(snapshotPath);
+        // Circulation events numbered below this are already in the snapshot
+        int snapshotEvents = library.circulation().eventCount();
+        // A segment retired by an interrupted compaction comes before the live one. Fold it into a
+        // snapshot now, so the next compaction never retires the live segment over it
+        Path retiredPath = retiredPath(journalPath);
+        replay(retiredPath, library, snapshotEvents);
+        long validLength = replay(journalPath, library, snapshotEvents);
+        if (Files.exists(retiredPath)) {
+            writeSnapshot(library, snapshotPath);
+            Files.delete(retiredPath);
+        }
+        LibraryJournal journal = new LibraryJournal(library, snapshotPath, journalPath, validLength);
+        library.attachJournal(journal);
+        return journal;
+    }
+
+    public Library getLibrary() {
+        return library;
+    }
+
+    public void logAdd(Book book) {
+        append(encode(OP_ADD, book.getId(), data -> {
+            data.writeUTF(book.getTitle());
+            data.writeUTF(book.getAuthor());
+            data.writeUTF(book.getGenre());
+            data.writeBoolean(book.isBorrowed());
+            data.writeInt(book.getBorrowCount());
+        }));
+    }
+
+    public void logRemove(String id) {
+        append(encode(OP_REMOVE, id, data -> { }));
+    }
+
+    // Carries the book's borrow count after the borrow, so replay sets it rather than adding one,
+    // and the event's position in the circulation log (negative if it was not recorded)
+    public void logBorrow(String id, long time, int borrowCount, int event) {
+        append(encode(OP_BORROW, id, data -> {
+            data.writeLong(time);
+            data.writeInt(borrowCount);
+            data.writeInt(event);
+        }));
+    }
+
+    public void logReturn(String id, long time, int event) {
+        append(encode(OP_RETURN, id, data -> {
+            data.writeLong(time);
+            data.writeInt(event);
+        }));
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncer.shutdown();
+        try {
+            syncer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compact();
+        synchronized (this) {
+            out.close();
+        }
+    }
+
+    // Appends are called from inside the Library's per-id locks, so they never compact inline;
+    // the snapshot needs those locks itself and is handed to the sync thread instead
+    private synchronized void append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        try {
+            out.writeInt(payload.length);
+            out.writeInt((int) crc.getValue());
+            out.write(payload);
+            dirty = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        // Scaled to the catalog so bulk imports don't rewrite an ever-growing snapshot every 10k records
+        if (++recordsSinceSnapshot >= Math.max(COMPACT_THRESHOLD, library.size()) && !compactionPending) {
+            compactionPending = true;
+            syncer.execute(this::compact);
+        }
+    }
+
+    // Retires the current segment, snapshots the live library without holding the journal lock, then
+    // drops the retired segment. The snapshot may already include some later records, which is fine:
+    // every record sets state outright (borrows carry the resulting borrow count), so replaying the
+    // new segment over it converges on the same state, and circulation events carry their log
+    // position so those already in the snapshot are not recorded again.
+    private void compact() {
+        try {
+            synchronized (this) {
+                out.flush();
+                channel.force(true);
+                // A retired segment still here means the last snapshot failed and it holds the only copy
+                // of its records; keep the live segment where it is and just retry the snapshot
+                if (!Files.exists(retiredPath)) {
+                    out.close();
+                    Files.move(journalPath, retiredPath, StandardCopyOption.ATOMIC_MOVE);
+                    openChannel(0);
+                }
+                recordsSinceSnapshot = 0;
+                dirty = false;
+            }
+            writeSnapshot(library, snapshotPath);
+            Files.deleteIfExists(retiredPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                compactionPending = false;
+            }
+        }
+    }
+
+    // fsync batching: records appended within one interval share a single force()
+    private synchronized void sync() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            out.flush();
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void openChannel(long validLength) throws IOException {
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drop a torn record left behind by a crash mid-append
+        channel.truncate(validLength);
+        channel.position(validLength);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    private static Path retiredPath(Path journalPath) {
+        return journalPath.resolveSibling(journalPath.getFileName() + ".old");
+    }
+
+    private interface RecordBody {
+        void write(DataOutputStream data) throws IOException;
+    }
+
+    private static byte[] encode(byte op, String id, RecordBody body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            data.writeByte(op);
+            data.writeUTF(id);
+            body.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Applies every intact record and returns the byte length of the valid prefix
+    private static long replay(Path journalPath, Library library, int snapshotEvents) throws IOException {
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(payload, library, snapshotEvents);
+                valid += 8 + length;
+            }
+        } catch (EOFException e) {
+            // Torn tail from a crash, everything before it is intact
+        }
+        return valid;
+    }
+
+    private static void apply(byte[] payload, Library library, int snapshotEvents) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = data.readByte();
+        String id = data.readUTF();
+        switch (op) {
+            case OP_ADD -> {
+                Book book = new Book(id, data.readUTF(), data.readUTF(), data.readUTF());
+                book.setBorrowed(data.readBoolean());
+                // Records written before borrow counts were tracked end here
+                if (data.available() >= 4) {
+                    book.setBorrowCount(data.readInt());
+                }
+                library.addBook(book);
+            }
+            case OP_REMOVE -> library.removeBook(id);
+            // Older records carry no timestamp and are not replayed into the circulation log; events
+            // the snapshot already holds are replayed with an unknown time so they are not recorded twice
+            case OP_BORROW -> {
+                long time = data.available() >= 8 ? data.readLong() : -1;
+                int borrowCount = data.available() >= 4 ? data.readInt() : -1;
+                int event = data.available() >= 4 ? data.readInt() : -1;
+                library.restoreBorrowed(id, true, event >= 0 && event < snapshotEvents ? -1 : time, borrowCount);
+            }
+            case OP_RETURN -> {
+                long time = data.available() >= 8 ? data.readLong() : -1;
+                int event = data.available() >= 4 ? data.readInt() : -1;
+                library.restoreBorrowed(id, false, event >= 0 && event < snapshotEvents ? -1 : time, -1);
+            }
+            default -> throw new IOException("Unknown journal op " + op);
+        }
+    }
+
+    private static Library readSnapshot(Path snapshotPath) throws IOException {
+        return CatalogFile.load(snapshotPath);
+    }
+
+    private static void writeSnapshot(Library library, Path snapshotPath) throws IOException {
+        CatalogFile.write(library, snapshotPath);
+    }
+}
+
+// Minimal JSON encoding for books and decoding of flat request objects, enough for LibraryServer
+class LibraryJson {
+    public static String book(Book book) {
+        return "{\"id\":" + quote(book.getId())
+            + ",\"title\":" + quote(book.getTitle())
+            + ",\"author\":" + quote(book.getAuthor())
+            + ",\"genre\":" + quote(book.getGenre())
+            + ",\"borrowed\":" + book.isBorrowed() + "}";
+    }
+
+    public static String books(Collection<Book> books) {
+        StringBuilder sb = new StringBuilder(books.size() * 96 + 2).append('[');
+        for (Book book : books) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(book(book));
+        }
+        return sb.append(']').toString();
+    }
 
-// Book class to represent book data
-class Book implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private String id;
-    private String title;
-    private String author;
-    private String genre;
-    private boolean isBorrowed;
+    public static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
 
-    public Book(String id, String title, String author, String genre) {
-        this.id = id;
-        this.title = title;
-        this.author = author;
-        this.genre = genre;
-        this.isBorrowed = false;
+    public static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
     }
 
-    public String getId() { return id; }
-    public String getTitle() { return title; }
-    public String getAuthor() { return author; }
-    public String getGenre() { return genre; }
-    public boolean isBorrowed() { return isBorrowed; }
-    public void setBorrowed(boolean borrowed) { this.isBorrowed = borrowed; }
+    // Parses a single-level object; non-string values are kept as their raw text
+    public static Map<String, String> parseObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] pos = {skipWhitespace(json, 0)};
+        expect(json, pos, '{');
+        pos[0] = skipWhitespace(json, pos[0]);
+        if (pos[0] < json.length() && json.charAt(pos[0]) == '}') {
+            return fields;
+        }
+        while (true) {
+            pos[0] = skipWhitespace(json, pos[0]);
+            String key = parseString(json, pos);
+            pos[0] = skipWhitespace(json, pos[0]);
+            expect(json, pos, ':');
+            pos[0] = skipWhitespace(json, pos[0]);
+            String value;
+            if (pos[0] < json.length() && json.charAt(pos[0]) == '"') {
+                value = parseString(json, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(pos[0])) < 0) {
+                    pos[0]++;
+                }
+                value = json.substring(start, pos[0]);
+            }
+            fields.put(key, value);
+            pos[0] = skipWhitespace(json, pos[0]);
+            if (pos[0] < json.length() && json.charAt(pos[0]) == ',') {
+                pos[0]++;
+                continue;
+            }
+            expect(json, pos, '}');
+            return fields;
+        }
+    }
 
-    @Override
-    public String toString() {
-        return String.format("ID: %s | Title: %s | Author: %s | Genre: %s | %s",
-            id, title, author, genre, isBorrowed ? "Borrowed" : "Available");
+    private static String parseString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (pos[0] < json.length()) {
+            char c = json.charAt(pos[0]++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\' && pos[0] < json.length()) {
+                char escaped = json.charAt(pos[0]++);
+                switch (escaped) {
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (pos[0] + 4 > json.length()) {
+                            throw new IllegalArgumentException("Bad unicode escape");
+                        }
+                        sb.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                        pos[0] += 4;
+                    }
+                    default -> sb.append(escaped);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static void expect(String json, int[] pos, char c) {
+        if (pos[0] >= json.length() || json.charAt(pos[0]) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static int skipWhitespace(String json, int pos) {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos;
     }
 }
 
-// Library class to manage book collection
-class Library implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private Map<String, Book> books;
+// Headless HTTP front end over a shared Library, served by a fixed pool of worker threads.
+//   GET    /books?q=..&type=Title|Author|Genre   search (all books without q)
+//   GET    /books?genre=..  or  ?author=..       exact-match filter
+//   GET    /books/{id}                           fetch one book
+//   POST   /books                                add {"id","title","author","genre"}
+//   DELETE /books/{id}                           remove
+//   POST   /books/{id}/borrow, /books/{id}/return
+//   GET    /facets?genre=..&author=..&status=available|borrowed   count plus per-genre counts
+class LibraryServer {
+    // Handlers only touch in-memory state and the journal buffer, so a few threads per core suffice
+    private static final int WORKERS = Runtime.getRuntime().availableProcessors() * 4;
+    // The prefix index keeps this many ranked entries per node
+    private static final int MAX_SUGGESTIONS = 10;
+    // The ranking is walked under the circulation lock, so a request may only ask for so many
+    private static final int MAX_TOP_BORROWED = 100;
 
-    public Library() {
-        books = new HashMap<>();
+    private final Library library;
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    public LibraryServer(Library library, int port) throws IOException {
+        this.library = library;
+        // Headers and body go out as separate writes; without TCP_NODELAY every response waits on a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/books", this::handle);
+        server.createContext("/facets", this::handleFacets);
+        server.createContext("/suggest", this::handleSuggest);
+        server.createContext("/circulation", this::handleCirculation);
+        workers = Executors.newFixedThreadPool(WORKERS);
+        server.setExecutor(workers);
     }
 
-    public void addBook(Book book) {
-        books.put(book.getId(), book);
+    public void start() {
+        server.start();
+        System.out.println("Library server listening on port " + server.getAddress().getPort());
     }
 
-    public void removeBook(String id) {
-        books.remove(id);
+    public void stop() {
+        server.stop(1);
+        workers.shutdown();
     }
 
-    public void borrowBook(String id) {
-        Book book = books.get(id);
-        if (book != null && !book.isBorrowed()) {
-            book.setBorrowed(true);
+    private void handle(HttpExchange exchange) throws IOException {
+        // Bad input is answered inside the try, while the exchange is still open
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, LibraryJson.error(e.getMessage()));
+            }
         }
     }
 
-    public void returnBook(String id) {
-        Book book = books.get(id);
-        if (book != null && book.isBorrowed()) {
-            book.setBorrowed(false);
+    private void route(HttpExchange exchange) throws IOException {
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        // parts: "", "books", [id], [action]
+        String method = exchange.getRequestMethod();
+        String id = parts.length > 2 ? URLDecoder.decode(parts[2], StandardCharsets.UTF_8) : null;
+        String action = parts.length > 3 ? parts[3] : null;
+        if (parts.length > 4) {
+            send(exchange, 404, LibraryJson.error("Unknown path"));
+        } else if (id == null && method.equals("GET")) {
+            Map<String, String> query = queryParams(exchange.getRequestURI().getRawQuery());
+            String q = query.getOrDefault("q", "");
+            List<Book> results;
+            if (query.containsKey("genre")) {
+                results = library.filterByGenre(query.get("genre"));
+            } else if (query.containsKey("author")) {
+                results = library.filterByAuthor(query.get("author"));
+            } else if (q.isEmpty()) {
+                results = new ArrayList<>(library.getAllBooks());
+            } else {
+                results = library.searchBooks(q, query.getOrDefault("type", "Title"));
+            }
+            send(exchange, 200, LibraryJson.books(results));
+        } else if (id == null && method.equals("POST")) {
+            addBook(exchange);
+        } else if (id != null && action == null && method.equals("GET")) {
+            Book book = library.getBook(id);
+            send(exchange, book != null ? 200 : 404, book != null ? LibraryJson.book(book) : LibraryJson.error("Book not found"));
+        } else if (id != null && action == null && method.equals("DELETE")) {
+            boolean removed = library.removeBook(id);
+            send(exchange, removed ? 200 : 404, removed ? "{}" : LibraryJson.error("Book not found"));
+        } else if (id != null && method.equals("POST") && ("borrow".equals(action) || "return".equals(action))) {
+            circulate(exchange, id, action.equals("borrow"));
+        } else {
+            send(exchange, 405, LibraryJson.error("Unsupported request"));
         }
     }
 
-    public List<Book> searchBooks(String query, String searchType) {
-        return books.values().stream()
-            .filter(book -> {
-                String field = switch (searchType) {
-                    case "Title" -> book.getTitle();
-                    case "Author" -> book.getAuthor();
-                    case "Genre" -> book.getGenre();
-                    default -> "";
-                };
-                return field.toLowerCase().contains(query.toLowerCase());
-            })
-            .collect(Collectors.toList());
+    private void handleFacets(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                Map<String, String> query = queryParams(exchange.getRequestURI().getRawQuery());
+                String status = query.get("status");
+                if (status != null && !status.equals("borrowed") && !status.equals("available")) {
+                    send(exchange, 400, LibraryJson.error("status must be borrowed or available"));
+                    return;
+                }
+                Boolean borrowed = status == null ? null : status.equals("borrowed");
+                FacetIndex facets = library.facets();
+                StringBuilder json = new StringBuilder("{\"count\":")
+                    .append(facets.count(query.get("genre"), query.get("author"), borrowed))
+                    .append(",\"genres\":{");
+                facets.genreCounts(borrowed).forEach((genre, count) -> {
+                    if (json.charAt(json.length() - 1) != '{') {
+                        json.append(',');
+                    }
+                    json.append(LibraryJson.quote(genre)).append(':').append(count);
+                });
+                send(exchange, 200, json.append("}}").toString());
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, LibraryJson.error(e.getMessage()));
+            }
+        }
     }
 
-    public Collection<Book> getAllBooks() {
-        return books.values();
+    // GET /suggest?prefix=...&type=Title|Author&limit=N -> most borrowed matches first, N clamped to 1..10
+    private void handleSuggest(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                Map<String, String> query = queryParams(exchange.getRequestURI().getRawQuery());
+                String prefix = query.getOrDefault("prefix", "");
+                int limit = Math.max(1, Math.min(MAX_SUGGESTIONS, intParam(query, "limit", MAX_SUGGESTIONS)));
+                List<String> suggestions = query.getOrDefault("type", "Title").equals("Author")
+                    ? library.suggestAuthors(prefix, limit) : library.suggestTitles(prefix, limit);
+                StringBuilder json = new StringBuilder("[");
+                for (String suggestion : suggestions) {
+                    if (json.length() > 1) {
+                        json.append(',');
+                    }
+                    json.append(LibraryJson.quote(suggestion));
+                }
+                send(exchange, 200, json.append(']').toString());
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, LibraryJson.error(e.getMessage()));
+            }
+        }
     }
 
-    public Book getBook(String id) {
-        return books.get(id);
+    // GET /circulation?top=N -> most borrowed this week and loan duration stats, N clamped to 1..100
+    private void handleCirculation(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                Map<String, String> query = queryParams(exchange.getRequestURI().getRawQuery());
+                int top = Math.max(1, Math.min(MAX_TOP_BORROWED, intParam(query, "top", 10)));
+                CirculationLog circulation = library.circulation();
+                StringBuilder json = new StringBuilder("{\"events\":").append(circulation.eventCount())
+                    .append(",\"completedLoans\":").append(circulation.completedLoans())
+                    .append(",\"averageLoanSeconds\":").append(circulation.averageLoanMillis() / 1000)
+                    .append(",\"p90LoanSeconds\":").append(circulation.loanPercentileMillis(0.9) / 1000)
+                    .append(",\"topThisWeek\":{");
+                circulation.topBorrowed(top, System.currentTimeMillis()).forEach((id, count) -> {
+                    if (json.charAt(json.length() - 1) != '{') {
+                        json.append(',');
+                    }
+                    json.append(LibraryJson.quote(id)).append(':').append(count);
+                });
+                send(exchange, 200, json.append("}}").toString());
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, LibraryJson.error(e.getMessage()));
+            }
+        }
+    }
+
+    private void addBook(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, String> fields = LibraryJson.parseObject(body);
+        String id = fields.get("id");
+        if (id == null || id.isEmpty()) {
+            send(exchange, 400, LibraryJson.error("Missing id"));
+            return;
+        }
+        Book book = new Book(id, fields.getOrDefault("title", ""), fields.getOrDefault("author", ""),
+            fields.getOrDefault("genre", ""));
+        if (library.addNewBook(book)) {
+            send(exchange, 201, LibraryJson.book(book));
+        } else {
+            send(exchange, 409, LibraryJson.error("Book ID already exists"));
+        }
+    }
+
+    private void circulate(HttpExchange exchange, String id, boolean borrow) throws IOException {
+        if (library.getBook(id) == null) {
+            send(exchange, 404, LibraryJson.error("Book not found"));
+        } else if (borrow ? library.borrowBook(id) : library.returnBook(id)) {
+            send(exchange, 200, LibraryJson.book(library.getBook(id)));
+        } else {
+            send(exchange, 409, LibraryJson.error(borrow ? "Book is already borrowed" : "Book wasn't borrowed"));
+        }
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        try {
+            return query.containsKey(name) ? Integer.parseInt(query.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name);
+        }
+    }
+
+    private static Map<String, String> queryParams(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
+
+// Closed-loop load generator for LibraryServer: every client is a thread issuing a
+// search-heavy circulation mix back to back, latencies are merged and reported at the end
+class LibraryLoadGenerator {
+    private static final int SEED_BOOKS = 10_000;
+    private static final String[] WORDS = {"history", "garden", "winter", "river", "night", "empire", "silent", "ocean"};
+
+    public static void run(String baseUrl, int clients, int seconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+        seed(client, baseUrl);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<long[]> perClient = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong errors = new AtomicLong();
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Thread worker = new Thread(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = nextRequest(baseUrl, random);
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 500) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - sent;
+                }
+                perClient.add(Arrays.copyOf(latencies, count));
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long[] all = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            System.out.println("No requests completed.");
+            return;
+        }
+        System.out.printf("%d clients, %d requests in %.1fs: %.0f req/s, %d errors%n",
+            clients, all.length, elapsed, all.length / elapsed, errors.get());
+        System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+            percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[all.length - 1] / 1e6);
+    }
+
+    private static void seed(HttpClient client, String baseUrl) throws InterruptedException {
+        for (int i = 0; i < SEED_BOOKS; i++) {
+            String body = "{\"id\":\"LG" + i + "\",\"title\":\"The " + WORDS[i % WORDS.length] + " " + i
+                + "\",\"author\":\"Author " + (i % 500) + "\",\"genre\":\"Genre " + (i % 20) + "\"}";
+            try {
+                client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/books"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.discarding());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot reach " + baseUrl, e);
+            }
+        }
+    }
+
+    // 70% search, 10% lookup, 10% borrow, 10% return
+    private static HttpRequest nextRequest(String baseUrl, ThreadLocalRandom random) {
+        int roll = random.nextInt(100);
+        String id = "LG" + random.nextInt(SEED_BOOKS);
+        if (roll < 70) {
+            String q = WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(10);
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/books?type=Title&q="
+                + URLEncoder.encode(q, StandardCharsets.UTF_8))).GET().build();
+        } else if (roll < 80) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/books/" + id)).GET().build();
+        }
+        String action = roll < 90 ? "borrow" : "return";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/books/" + id + "/" + action))
+            .POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
+
+// Hammers one Library from many threads and checks that no book is ever held by two borrowers
+class LibraryStressTest {
+    private static final int BOOKS = 64;
+    private static final int OPERATIONS_PER_THREAD = 200_000;
+
+    public static boolean run(int threads) {
+        Library library = new Library();
+        for (int i = 0; i < BOOKS; i++) {
+            library.addBook(new Book("B" + i, "Title " + i, "Author " + (i % 8), "Genre " + (i % 4)));
+        }
+        AtomicIntegerArray holders = new AtomicIntegerArray(BOOKS);
+        AtomicInteger doubleBorrows = new AtomicInteger();
+        AtomicInteger failedReturns = new AtomicInteger();
+        AtomicLong borrows = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<Integer> held = new ArrayList<>();
+                for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                    if (!held.isEmpty() && random.nextBoolean()) {
+                        int book = held.remove(held.size() - 1);
+                        holders.decrementAndGet(book);
+                        if (!library.returnBook("B" + book)) {
+                            failedReturns.incrementAndGet();
+                        }
+                    } else {
+                        int book = random.nextInt(BOOKS);
+                        if (library.borrowBook("B" + book)) {
+                            borrows.incrementAndGet();
+                            if (holders.incrementAndGet(book) != 1) {
+                                doubleBorrows.incrementAndGet();
+                            }
+                            held.add(book);
+                        }
+                    }
+                    if (op % 1000 == 0) {
+                        library.searchBooks("title", "Title");
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long stillBorrowed = library.getAllBooks().stream().filter(Book::isBorrowed).count();
+        long stillHeld = 0;
+        for (int i = 0; i < BOOKS; i++) {
+            stillHeld += holders.get(i);
+        }
+        boolean ok = doubleBorrows.get() == 0 && failedReturns.get() == 0 && stillBorrowed == stillHeld;
+        System.out.printf("%d threads, %d borrows in %.2fs (%.0f ops/s)%n",
+            threads, borrows.get(), seconds, threads * (double) OPERATIONS_PER_THREAD / seconds);
+        System.out.printf("double borrows: %d, failed returns: %d, borrowed at end: %d (expected %d) -> %s%n",
+            doubleBorrows.get(), failedReturns.get(), stillBorrowed, stillHeld, ok ? "OK" : "FAILED");
+        return ok;
+    }
+}
+
+// Bulk catalog import. A reader cuts the file into chunks of records, each chunk is parsed in
+// parallel on the fork/join pool while the next one is being read, and parsed books go into the
+// Library one batch at a time. Two formats are understood:
+//   CSV   one book per line: id,title,author,genre (optional header row, "quoted" fields)
+//   MARC  MARC-like tagged lines, records separated by a blank line:
+//         001 <id> / 245 <title> / 100 <author> / 655 <genre>
+class CatalogImporter {
+    private static final int CHUNK_RECORDS = 50_000;
+    private static final int PARSE_THRESHOLD = 2_048;
+
+    enum Format { CSV, MARC }
+
+    static class Report {
+        long records;
+        long imported;
+        long duplicates;
+        long rejected;
+        // Sum of each heap pool's own peak since the import started, tracked by the JVM rather than
+        // sampled, so it also counts peaks between batches; an upper bound when pools peak at different times
+        long peakHeapBytes;
+        double seconds;
+
+        @Override
+        public String toString() {
+            return String.format("%d records in %.2fs (%.0f records/s): %d imported, %d duplicates, %d rejected, "
+                + "heap high-water %d MB", records, seconds, records / Math.max(seconds, 1e-9), imported,
+                duplicates, rejected, peakHeapBytes >> 20);
+        }
+    }
+
+    public static Format detect(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".csv") ? Format.CSV : Format.MARC;
+    }
+
+    public static Report importFile(Library library, Path file) throws IOException {
+        Format format = detect(file);
+        Report report = new Report();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        long start = System.nanoTime();
+        ForkJoinTask<List<Book>> pending = null;
+        int pendingSize = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> chunk;
+            boolean first = true;
+            while (!(chunk = readChunk(reader, format, first)).isEmpty()) {
+                first = false;
+                ForkJoinTask<List<Book>> parsing = ForkJoinPool.commonPool().submit(new ParseTask(chunk, 0, chunk.size(), format));
+                // Insert the previous chunk while this one parses
+                if (pending != null) {
+                    insert(library, pending.join(), pendingSize, seen, report);
+                }
+                pending = parsing;
+                pendingSize = chunk.size();
+            }
+        }
+        if (pending != null) {
+            insert(library, pending.join(), pendingSize, seen, report);
+        }
+        report.seconds = (System.nanoTime() - start) / 1e9;
+        for (MemoryPoolMXBean pool : heapPools) {
+            if (pool.isValid()) {
+                report.peakHeapBytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        return report;
+    }
+
+    private static void insert(Library library, List<Book> parsed, int chunkSize, Set<String> seen, Report report) {
+        List<Book> batch = new ArrayList<>(parsed.size());
+        for (Book book : parsed) {
+            if (seen.add(book.getId())) {
+                batch.add(book);
+            }
+        }
+        int added = library.addBooks(batch);
+        report.records += chunkSize;
+        report.rejected += chunkSize - parsed.size();
+        report.imported += added;
+        report.duplicates += parsed.size() - added;
+    }
+
+    // Returns up to CHUNK_RECORDS raw records; a MARC record is its lines joined with '\n'
+    private static List<String> readChunk(BufferedReader reader, Format format, boolean first) throws IOException {
+        List<String> records = new ArrayList<>();
+        StringBuilder record = new StringBuilder();
+        String line;
+        while (records.size() < CHUNK_RECORDS && (line = reader.readLine()) != null) {
+            if (format == Format.CSV) {
+                if (first && records.isEmpty() && line.toLowerCase().startsWith("id,")) {
+                    continue;
+                }
+                if (!line.isBlank()) {
+                    records.add(line);
+                }
+            } else if (line.isBlank()) {
+                if (record.length() > 0) {
+                    records.add(record.toString());
+                    record.setLength(0);
+                }
+            } else {
+                record.append(line).append('\n');
+            }
+        }
+        if (record.length() > 0) {
+            records.add(record.toString());
+        }
+        return records;
+    }
+
+    private static class ParseTask extends RecursiveTask<List<Book>> {
+        private static final long serialVersionUID = 1L;
+        private final List<String> records;
+        private final int from;
+        private final int to;
+        private final Format format;
+
+        ParseTask(List<String> records, int from, int to, Format format) {
+            this.records = records;
+            this.from = from;
+            this.to = to;
+            this.format = format;
+        }
+
+        @Override
+        protected List<Book> compute() {
+            if (to - from <= PARSE_THRESHOLD) {
+                List<Book> books = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    Book book = format == Format.CSV ? parseCsv(records.get(i)) : parseMarc(records.get(i));
+                    if (book != null) {
+                        books.add(book);
+                    }
+                }
+                return books;
+            }
+            int mid = (from + to) >>> 1;
+            ParseTask left = new ParseTask(records, from, mid, format);
+            left.fork();
+            List<Book> right = new ParseTask(records, mid, to, format).compute();
+            List<Book> books = left.join();
+            books.addAll(right);
+            return books;
+        }
+    }
+
+    private static Book parseCsv(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        if (fields.size() < 4 || fields.get(0).isEmpty()) {
+            return null;
+        }
+        return new Book(fields.get(0), fields.get(1), fields.get(2), fields.get(3));
+    }
+
+    private static Book parseMarc(String record) {
+        String id = null, title = "", author = "", genre = "";
+        for (String line : record.split("\n")) {
+            String tagged = line.startsWith("=") ? line.substring(1) : line;
+            if (tagged.length() < 3) {
+                continue;
+            }
+            String value = tagged.substring(3).trim();
+            switch (tagged.substring(0, 3)) {
+                case "001" -> id = value;
+                case "245" -> title = value;
+                case "100" -> author = value;
+                case "650", "655" -> genre = genre.isEmpty() ? value : genre;
+                default -> { }
+            }
+        }
+        return id == null || id.isEmpty() ? null : new Book(id, title, author, genre);
+    }
+}
+
+// Table model over a list of book ids. Books are looked up only when JTable asks for a visible
+// cell, so listing a lazily loaded catalog loads just the rows scrolled past; mutations fire
+// single-row events instead of rebuilding the whole view
+class BookTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"ID", "Title", "Author", "Genre", "Status"};
+    private final Function<String, Book> lookup;
+    private final List<String> rows = new ArrayList<>();
+    private final Map<String, Integer> rowOf = new HashMap<>();
+
+    public BookTableModel(Function<String, Book> lookup) {
+        this.lookup = lookup;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        String id = rows.get(row);
+        Book book = lookup.apply(id);
+        if (book == null) {
+            // Deleted elsewhere since the ids were listed
+            return column == 0 ? id : "";
+        }
+        return switch (column) {
+            case 0 -> id;
+            case 1 -> book.getTitle();
+            case 2 -> book.getAuthor();
+            case 3 -> book.getGenre();
+            default -> book.isBorrowed() ? "Borrowed" : "Available";
+        };
+    }
+
+    public Book getBookAt(int row) {
+        return lookup.apply(rows.get(row));
+    }
+
+    public boolean contains(String id) {
+        return rowOf.containsKey(id);
+    }
+
+    public void clear() {
+        rows.clear();
+        rowOf.clear();
+        fireTableDataChanged();
+    }
+
+    // Appends a chunk of rows, used to stream in results as they arrive
+    public void appendAll(List<String> ids) {
+        int first = rows.size();
+        for (String id : ids) {
+            if (!rowOf.containsKey(id)) {
+                rowOf.put(id, rows.size());
+                rows.add(id);
+            }
+        }
+        if (rows.size() > first) {
+            fireTableRowsInserted(first, rows.size() - 1);
+        }
+    }
+
+    // Repaints the row holding this id, or appends it if it is not shown yet
+    public void upsert(String id) {
+        Integer row = rowOf.get(id);
+        if (row == null) {
+            appendAll(List.of(id));
+        } else {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    // Moves the last row into the gap so a delete is O(1) instead of shifting every later row
+    public void remove(String id) {
+        Integer row = rowOf.remove(id);
+        if (row == null) {
+            return;
+        }
+        int last = rows.size() - 1;
+        String moved = rows.remove(last);
+        if (row != last) {
+            rows.set(row, moved);
+            rowOf.put(moved, row);
+            fireTableRowsUpdated(row, row);
+        }
+        fireTableRowsDeleted(last, last);
     }
 }
 
 // Main GUI class
 public class LibraryManagementSystem extends JFrame {
+    private static final Path LEGACY_FILE = Paths.get("library.dat");
+    private static final Path SNAPSHOT_FILE = Paths.get("library.cat");
+    private static final Path JOURNAL_FILE = Paths.get("library.journal");
+    private LibraryJournal journal;
+    private static final int RESULT_CHUNK = 500;
+    private static final int SUGGESTIONS = 8;
     private Library library;
-    private JTextArea displayArea;
+    private final BookTableModel tableModel = new BookTableModel(id -> library.getBook(id));
+    private JTable bookTable;
+    private JLabel statusLabel;
+    // True while the table lists the whole catalog, false while it shows search results
+    private boolean showingAll;
+    private SwingWorker<Void, List<String>> loader;
     private JTextField idField, titleField, authorField, genreField, searchField;
     private JComboBox<String> searchTypeCombo;
+    private final JPopupMenu suggestionPopup = new JPopupMenu();
 
     public LibraryManagementSystem() {
         library = loadLibrary();
@@ -156,12 +3074,14 @@ public class LibraryManagementSystem extends JFrame {
         JButton deleteButton = new JButton("Delete Book");
         JButton borrowButton = new JButton("Borrow Book");
         JButton returnButton = new JButton("Return Book");
+        JButton importButton = new JButton("Import...");
 
         inputPanel.add(addButton);
         inputPanel.add(editButton);
         inputPanel.add(deleteButton);
         inputPanel.add(borrowButton);
         inputPanel.add(returnButton);
+        inputPanel.add(importButton);
 
         // Search Panel
         JPanel searchPanel = new JPanel(new FlowLayout());
@@ -172,11 +3092,23 @@ public class LibraryManagementSystem extends JFrame {
         searchPanel.add(searchField);
         searchPanel.add(searchTypeCombo);
         searchPanel.add(searchButton);
+        JButton showAllButton = new JButton("Show All");
+        searchPanel.add(showAllButton);
+        statusLabel = new JLabel();
+        searchPanel.add(statusLabel);
 
-        // Display Area
-        displayArea = new JTextArea(10, 50);
-        displayArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(displayArea);
+        // Book table
+        bookTable = new JTable(tableModel);
+        bookTable.setFillsViewportHeight(true);
+        bookTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        bookTable.getSelectionModel().addListSelectionListener(e -> {
+            int row = bookTable.getSelectedRow();
+            if (!e.getValueIsAdjusting() && row >= 0) {
+                fillFields(tableModel.getBookAt(bookTable.convertRowIndexToModel(row)));
+            }
+        });
+        JScrollPane scrollPane = new JScrollPane(bookTable);
+        scrollPane.setPreferredSize(new Dimension(600, 200));
 
         // Add components to frame
         add(inputPanel, BorderLayout.NORTH);
@@ -189,7 +3121,30 @@ public class LibraryManagementSystem extends JFrame {
         deleteButton.addActionListener(e -> deleteBook());
         borrowButton.addActionListener(e -> borrowBook());
         returnButton.addActionListener(e -> returnBook());
+        importButton.addActionListener(e -> importCatalog());
         searchButton.addActionListener(e -> searchBooks());
+        showAllButton.addActionListener(e -> updateDisplay());
+        searchField.addActionListener(e -> searchBooks());
+
+        // Autocomplete: the popup never takes focus, so typing continues in the search field
+        suggestionPopup.setFocusable(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                SwingUtilities.invokeLater(LibraryManagementSystem.this::showSuggestions);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                SwingUtilities.invokeLater(LibraryManagementSystem.this::showSuggestions);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        // Build the search indexes in the background so the first keystrokes get suggestions
+        CompletableFuture.runAsync(library::ensureIndexes);
 
         // Save on close
         addWindowListener(new WindowAdapter() {
@@ -204,14 +3159,16 @@ public class LibraryManagementSystem extends JFrame {
 
     private void addBook() {
         String id = idField.getText();
-        if (library.getBook(id) != null) {
+        Book book = new Book(id, titleField.getText(), authorField.getText(), genreField.getText());
+        if (!library.addNewBook(book)) {
             JOptionPane.showMessageDialog(this, "Book ID already exists!");
             return;
         }
-        Book book = new Book(id, titleField.getText(), authorField.getText(), genreField.getText());
-        library.addBook(book);
         clearFields();
-        updateDisplay();
+        if (showingAll) {
+            tableModel.upsert(id);
+            updateStatus();
+        }
     }
 
     private void editBook() {
@@ -221,12 +3178,13 @@ public class LibraryManagementSystem extends JFrame {
             JOptionPane.showMessageDialog(this, "Book not found!");
             return;
         }
-        library.removeBook(id);
         Book updatedBook = new Book(id, titleField.getText(), authorField.getText(), genreField.getText());
         updatedBook.setBorrowed(existingBook.isBorrowed());
-        library.addBook(updatedBook);
+        library.editBook(updatedBook);
         clearFields();
-        updateDisplay();
+        if (showingAll || tableModel.contains(id)) {
+            tableModel.upsert(id);
+        }
     }
 
     private void deleteBook() {
@@ -237,7 +3195,8 @@ public class LibraryManagementSystem extends JFrame {
         }
         library.removeBook(id);
         clearFields();
-        updateDisplay();
+        tableModel.remove(id);
+        updateStatus();
     }
 
     private void borrowBook() {
@@ -245,11 +3204,10 @@ public class LibraryManagementSystem extends JFrame {
         Book book = library.getBook(id);
         if (book == null) {
             JOptionPane.showMessageDialog(this, "Book not found!");
-        } else if (book.isBorrowed()) {
+        } else if (!library.borrowBook(id)) {
             JOptionPane.showMessageDialog(this, "Book is already borrowed!");
-        } else {
-            library.borrowBook(id);
-            updateDisplay();
+        } else if (tableModel.contains(id)) {
+            tableModel.upsert(id);
         }
     }
 
@@ -258,25 +3216,129 @@ public class LibraryManagementSystem extends JFrame {
         Book book = library.getBook(id);
         if (book == null) {
             JOptionPane.showMessageDialog(this, "Book not found!");
-        } else if (!book.isBorrowed()) {
+        } else if (!library.returnBook(id)) {
             JOptionPane.showMessageDialog(this, "Book wasn't borrowed!");
-        } else {
-            library.returnBook(id);
-            updateDisplay();
+        } else if (tableModel.contains(id)) {
+            tableModel.upsert(id);
+        }
+    }
+
+    private void importCatalog() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        statusLabel.setText("Importing " + file.getFileName() + "...");
+        new SwingWorker<CatalogImporter.Report, Void>() {
+            @Override
+            protected CatalogImporter.Report doInBackground() throws IOException {
+                return CatalogImporter.importFile(library, file);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(LibraryManagementSystem.this, get().toString());
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(LibraryManagementSystem.this, "Import failed: " + e.getCause());
+                }
+                updateDisplay();
+            }
+        }.execute();
+    }
+
+    // Suggestions are answered from the prefix index in microseconds, cheap enough for the EDT;
+    // nothing is shown until the background index build has finished
+    private void showSuggestions() {
+        suggestionPopup.setVisible(false);
+        suggestionPopup.removeAll();
+        String prefix = searchField.getText();
+        String searchType = (String) searchTypeCombo.getSelectedItem();
+        if (prefix.isEmpty() || !library.indexesReady() || !searchField.hasFocus()) {
+            return;
+        }
+        List<String> suggestions = switch (searchType) {
+            case "Title" -> library.suggestTitles(prefix, SUGGESTIONS);
+            case "Author" -> library.suggestAuthors(prefix, SUGGESTIONS);
+            default -> List.of();
+        };
+        if (suggestions.isEmpty() || suggestions.size() == 1 && suggestions.get(0).equalsIgnoreCase(prefix)) {
+            return;
+        }
+        for (String suggestion : suggestions) {
+            JMenuItem item = new JMenuItem(suggestion);
+            item.addActionListener(e -> {
+                searchField.setText(suggestion);
+                suggestionPopup.setVisible(false);
+                searchBooks();
+            });
+            suggestionPopup.add(item);
         }
+        suggestionPopup.show(searchField, 0, searchField.getHeight());
     }
 
     private void searchBooks() {
+        suggestionPopup.setVisible(false);
         String query = searchField.getText();
         String searchType = (String) searchTypeCombo.getSelectedItem();
-        List<Book> results = library.searchBooks(query, searchType);
-        displayArea.setText("Search Results:\n");
-        results.forEach(book -> displayArea.append(book.toString() + "\n"));
+        showingAll = false;
+        load(() -> library.searchBooks(query, searchType).stream()
+            .map(Book::getId)
+            .collect(Collectors.toList()), "Search results");
     }
 
     private void updateDisplay() {
-        displayArea.setText("All Books:\n");
-        library.getAllBooks().forEach(book -> displayArea.append(book.toString() + "\n"));
+        showingAll = true;
+        load(library::ids, "All books");
+    }
+
+    // Runs the query off the EDT and streams the matching ids into the table in chunks; a newer
+    // query cancels the one still in flight
+    private void load(Supplier<List<String>> query, String label) {
+        if (loader != null) {
+            loader.cancel(true);
+        }
+        tableModel.clear();
+        statusLabel.setText(label + ": loading...");
+        loader = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() {
+                List<String> results = query.get();
+                for (int i = 0; i < results.size() && !isCancelled(); i += RESULT_CHUNK) {
+                    publish(results.subList(i, Math.min(results.size(), i + RESULT_CHUNK)));
+                }
+                return null;
+            }
+
+            @Override
+            protected void process(List<List<String>> chunks) {
+                if (isCancelled()) {
+                    return;
+                }
+                chunks.forEach(tableModel::appendAll);
+                statusLabel.setText(label + ": " + tableModel.getRowCount());
+            }
+
+            @Override
+            protected void done() {
+                if (!isCancelled()) {
+                    statusLabel.setText(label + ": " + tableModel.getRowCount());
+                }
+            }
+        };
+        loader.execute();
+    }
+
+    private void updateStatus() {
+        statusLabel.setText((showingAll ? "All books" : "Search results") + ": " + tableModel.getRowCount());
+    }
+
+    private void fillFields(Book book) {
+        idField.setText(book.getId());
+        titleField.setText(book.getTitle());
+        authorField.setText(book.getAuthor());
+        genreField.setText(book.getGenre());
     }
 
     private void clearFields() {
@@ -286,26 +3348,68 @@ public class LibraryManagementSystem extends JFrame {
         genreField.setText("");
     }
 
+    // Mutations are already journaled, closing just snapshots and compacts the journal
     private void saveLibrary() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("library.dat"))) {
-            oos.writeObject(library);
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     private Library loadLibrary() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream("library.dat"))) {
-            return (Library) ois.readObject();
-        } catch (FileNotFoundException e) {
-            return new Library();
-        } catch (IOException | ClassNotFoundException e) {
+        try {
+            if (!Files.exists(SNAPSHOT_FILE) && Files.exists(LEGACY_FILE)) {
+                CatalogFile.convertLegacy(LEGACY_FILE, SNAPSHOT_FILE);
+            }
+            journal = LibraryJournal.open(SNAPSHOT_FILE, JOURNAL_FILE);
+            return journal.getLibrary();
+        } catch (IOException e) {
             e.printStackTrace();
             return new Library();
         }
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 3 && args[0].equals("--convert")) {
+            CatalogFile.convertLegacy(Paths.get(args[1]), Paths.get(args[2]));
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--serve")) {
+            LibraryJournal journal = LibraryJournal.open(SNAPSHOT_FILE, JOURNAL_FILE);
+            LibraryServer server = new LibraryServer(journal.getLibrary(), args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+            server.start();
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--loadgen")) {
+            String url = args.length > 1 ? args[1] : "http://localhost:8080";
+            int clients = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+            int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+            LibraryLoadGenerator.run(url, clients, seconds);
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--import")) {
+            LibraryJournal journal = LibraryJournal.open(SNAPSHOT_FILE, JOURNAL_FILE);
+            try (journal) {
+                System.out.println(CatalogImporter.importFile(journal.getLibrary(), Paths.get(args[1])));
+            }
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--stress")) {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 2;
+            System.exit(LibraryStressTest.run(threads) ? 0 : 1);
+        }
         SwingUtilities.invokeLater(() -> {
             new LibraryManagementSystem().setVisible(true);
         });